@@ -1,40 +1,66 @@
 package bg.sofia.uni.fmi.mjt.spotify;
 
+import bg.sofia.uni.fmi.mjt.spotify.algoriithm.Rijndael;
 import bg.sofia.uni.fmi.mjt.spotify.exception.CipherException;
 import bg.sofia.uni.fmi.mjt.spotify.exception.NotFoundPlaylistException;
 import bg.sofia.uni.fmi.mjt.spotify.exception.NotFoundSongException;
 import bg.sofia.uni.fmi.mjt.spotify.exception.NotFoundUserException;
 import bg.sofia.uni.fmi.mjt.spotify.exception.PlaylistAlreadyExistsException;
 import bg.sofia.uni.fmi.mjt.spotify.exception.SongAlreadyExistsException;
+import bg.sofia.uni.fmi.mjt.spotify.exception.StreamLimitExceededException;
 import bg.sofia.uni.fmi.mjt.spotify.exception.UserAlreadyExistsException;
 import bg.sofia.uni.fmi.mjt.spotify.exception.WeakPasswordException;
+import bg.sofia.uni.fmi.mjt.spotify.metrics.MetricsRegistry;
+import bg.sofia.uni.fmi.mjt.spotify.protocol.FrameSink;
+import bg.sofia.uni.fmi.mjt.spotify.session.Session;
+import bg.sofia.uni.fmi.mjt.spotify.session.SessionRegistry;
+import bg.sofia.uni.fmi.mjt.spotify.song.EmbeddedPlaylistStorage;
 import bg.sofia.uni.fmi.mjt.spotify.song.Playlist;
 import bg.sofia.uni.fmi.mjt.spotify.song.PlaylistService;
 import bg.sofia.uni.fmi.mjt.spotify.song.Song;
+import bg.sofia.uni.fmi.mjt.spotify.song.TextFilePlaylistStorage;
+import bg.sofia.uni.fmi.mjt.spotify.storage.StorageEngine;
+import bg.sofia.uni.fmi.mjt.spotify.user.EmbeddedUserRepository;
+import bg.sofia.uni.fmi.mjt.spotify.user.UserRepository;
 import bg.sofia.uni.fmi.mjt.spotify.user.UserService;
 
 import java.nio.channels.SelectionKey;
-import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.security.NoSuchAlgorithmException;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
-public class Spotify implements SpotifyAPI {
+public class Spotify implements SpotifyAPI, AutoCloseable {
+    private static final String DATABASE_FILE_PATH = "resources\\spotify.db";
+    private static final String TEXT_FILES_IMPORTED_KEY = "meta/text-files-imported";
+
     private final UserService userService;
     private final PlaylistService playlistService;
-    private final Set<SelectionKey> loggedUsers;
+    private final StorageEngine storageEngine;
+    private final SessionRegistry sessions;
 
+    /**
+     * Keeps users and playlists in a single storage file. On the first start the users and playlists from the
+     * text files of older versions are copied into it.
+     */
     public Spotify() {
-        userService = new UserService();
-        playlistService = new PlaylistService();
-        loggedUsers = new HashSet<>();
+        storageEngine = new StorageEngine(Path.of(DATABASE_FILE_PATH));
+        EmbeddedUserRepository userRepository = new EmbeddedUserRepository(storageEngine);
+        EmbeddedPlaylistStorage playlistStorage = new EmbeddedPlaylistStorage(storageEngine);
+        if (storageEngine.get(TEXT_FILES_IMPORTED_KEY) == null) {
+            importTextFiles(userRepository, playlistStorage);
+        }
+        userService = new UserService(userRepository, new Rijndael());
+        playlistService = new PlaylistService(playlistStorage);
+        sessions = new SessionRegistry();
     }
 
     public Spotify(UserService userService, PlaylistService playlistService) {
         this.userService = userService;
         this.playlistService = playlistService;
-        loggedUsers = new HashSet<>();
+        this.storageEngine = null;
+        sessions = new SessionRegistry();
     }
 
     @Override
@@ -45,20 +71,39 @@ public class Spotify implements SpotifyAPI {
     }
 
     @Override
-    public void login(String email, String password, SelectionKey selectionKey) throws NotFoundUserException,
+    public String login(String email, String password, SelectionKey selectionKey) throws NotFoundUserException,
         CipherException {
-        if (loggedUsers.contains(selectionKey)) {
-            return;
+        Session session = sessions.get(selectionKey);
+        if (session != null) {
+            return session.getToken();
         }
 
         userService.login(email, password);
-        selectionKey.attach(email);
-        loggedUsers.add(selectionKey);
+        String sessionToken = sessions.open(selectionKey, email).getToken();
+        if (!selectionKey.isValid()) {
+            sessions.detach(selectionKey);
+        }
+        return sessionToken;
+    }
+
+    @Override
+    public boolean resume(String sessionToken, SelectionKey selectionKey) {
+        return sessions.resume(sessionToken, selectionKey) != null;
     }
 
     @Override
     public void disconnect(SelectionKey selectionKey) {
-        loggedUsers.remove(selectionKey);
+        stopStream(selectionKey);
+        sessions.close(selectionKey);
+    }
+
+    /**
+     * Called when the connection of a client is lost. Its stream is stopped at once, while a logged in client can
+     * resume its session from a new connection.
+     */
+    public void connectionClosed(SelectionKey selectionKey) {
+        stopStream(selectionKey);
+        sessions.detach(selectionKey);
     }
 
     @Override
@@ -94,27 +139,67 @@ public class Spotify implements SpotifyAPI {
 
     @Override
     public void play(String songName, String singerName, SelectionKey selectionKey)
-        throws NotFoundSongException {
-
-        playlistService.playSong(songName, singerName, (SocketChannel) selectionKey.channel());
+        throws NotFoundSongException, StreamLimitExceededException {
 
+        playlistService.playSong(songName, singerName, getUsernameOfCurrentUser(selectionKey),
+            (FrameSink) selectionKey.attachment());
     }
 
     @Override
-    public void stopSong() {
-        playlistService.stopSong();
+    public void stopSong(SelectionKey selectionKey) {
+        stopStream(selectionKey);
     }
 
     public String getUsernameOfCurrentUser(SelectionKey selectionKey) {
-        return loggedUsers.stream()
-            .filter(userKey -> userKey.equals(selectionKey))
-            .findFirst()
-            .get()
-            .attachment()
-            .toString();
+        Session session = sessions.get(selectionKey);
+        return session == null ? null : session.getUserEmail();
     }
 
     public boolean getIsUserLogged(SelectionKey selectionKey) {
-        return loggedUsers.contains(selectionKey);
+        return sessions.get(selectionKey) != null;
+    }
+
+    public void recordCommand(SelectionKey selectionKey) {
+        Session session = sessions.get(selectionKey);
+        if (session != null) {
+            session.recordCommand();
+        }
+    }
+
+    /**
+     * Registers the gauges of the sessions, the storage, the streams and the play events. Gauges keep what they read
+     * alive, so they are registered once, for the instance the server runs.
+     */
+    public void registerGauges(MetricsRegistry metrics) {
+        metrics.gauge("sessions.open", sessions::getSessionsCount);
+        metrics.gauge("sessions.connected", sessions::getConnectedSessionsCount);
+        if (storageEngine != null) {
+            metrics.gauge("storage.keys", storageEngine::getKeysCount);
+        }
+        playlistService.registerGauges(metrics);
+    }
+
+    @Override
+    public void close() {
+        playlistService.close();
+        if (storageEngine != null) {
+            storageEngine.close();
+        }
+    }
+
+    private void stopStream(SelectionKey selectionKey) {
+        if (selectionKey.attachment() instanceof FrameSink clientSink) {
+            playlistService.stopSong(clientSink);
+        }
+    }
+
+    private void importTextFiles(EmbeddedUserRepository userRepository, EmbeddedPlaylistStorage playlistStorage) {
+        if (Files.exists(Path.of(UserRepository.USERS_FILE_PATH))) {
+            userRepository.importFrom(new UserRepository());
+        }
+        if (Files.isDirectory(Path.of(TextFilePlaylistStorage.PLAYLISTS_FILE_PATH))) {
+            playlistStorage.importFrom(new TextFilePlaylistStorage());
+        }
+        storageEngine.put(TEXT_FILES_IMPORTED_KEY, String.valueOf(System.currentTimeMillis()));
     }
 }
\ No newline at end of file
@@ -6,6 +6,7 @@ import bg.sofia.uni.fmi.mjt.spotify.exception.NotFoundSongException;
 import bg.sofia.uni.fmi.mjt.spotify.exception.NotFoundUserException;
 import bg.sofia.uni.fmi.mjt.spotify.exception.PlaylistAlreadyExistsException;
 import bg.sofia.uni.fmi.mjt.spotify.exception.SongAlreadyExistsException;
+import bg.sofia.uni.fmi.mjt.spotify.exception.StreamLimitExceededException;
 import bg.sofia.uni.fmi.mjt.spotify.exception.UserAlreadyExistsException;
 import bg.sofia.uni.fmi.mjt.spotify.exception.WeakPasswordException;
 import bg.sofia.uni.fmi.mjt.spotify.song.Playlist;
@@ -20,9 +21,19 @@ public interface SpotifyAPI {
     void register(String email, String password) throws UserAlreadyExistsException,
         WeakPasswordException, CipherException, NoSuchAlgorithmException;
 
-    void login(String email, String password, SelectionKey selectionKey)
+    /**
+     * @return a token with which the session can be resumed from another connection
+     */
+    String login(String email, String password, SelectionKey selectionKey)
         throws NotFoundUserException, CipherException, NoSuchAlgorithmException;
 
+    /**
+     * Logs the connection in with the session of an earlier connection, without checking the password again.
+     *
+     * @return false if the token is unknown or has expired
+     */
+    boolean resume(String sessionToken, SelectionKey selectionKey);
+
     void disconnect(SelectionKey selectionKey);
 
     Set<Song> search(Set<String> keywords);
@@ -36,7 +47,11 @@ public interface SpotifyAPI {
 
     Playlist showPlaylist(String playlistName) throws NotFoundPlaylistException;
 
-    void play(String songName, String singerName, SelectionKey selectionKey) throws NotFoundSongException;
+    void play(String songName, String singerName, SelectionKey selectionKey) throws NotFoundSongException,
+        StreamLimitExceededException;
 
-    void stopSong();
+    /**
+     * Stops only the stream played on the given connection.
+     */
+    void stopSong(SelectionKey selectionKey);
 }
@@ -15,14 +15,24 @@ import java.security.NoSuchAlgorithmException;
 import java.security.spec.InvalidKeySpecException;
 import java.security.spec.KeySpec;
 import java.util.Base64;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
+/**
+ * AES with a key derived once per instance. Initialized ciphers are kept in pools and reused, because looking up the
+ * provider and expanding the key cost more than encrypting a password. The pools are shared by all threads rather
+ * than being thread-local, since commands run on short-lived virtual threads that would never reuse a cipher.
+ */
 public class Rijndael implements SymmetricBlockCipher {
     private static final String SALT = "12345678";
     private static final String PASSWORD = "spotify";
     private static final int ITERATION_COUNT = 65536;
     private static final int KEY_SIZE_IN_BYTE = 256;
     private static final String ENCRYPTION_ALGORITHM = "AES";
+    private static final int MAX_POOLED_CIPHERS = Runtime.getRuntime().availableProcessors() * 2;
     private final SecretKey secretKey;
+    private final BlockingQueue<Cipher> encryptCiphers;
+    private final BlockingQueue<Cipher> decryptCiphers;
 
     public Rijndael() {
         try {
@@ -33,15 +43,16 @@ public class Rijndael implements SymmetricBlockCipher {
         } catch (InvalidKeySpecException | NoSuchAlgorithmException e) {
             throw new IllegalStateException("A problem occurred while creating a secret key");
         }
+        encryptCiphers = new ArrayBlockingQueue<>(MAX_POOLED_CIPHERS);
+        decryptCiphers = new ArrayBlockingQueue<>(MAX_POOLED_CIPHERS);
     }
 
     @Override
     public String encrypt(String data) throws CipherException {
-        Cipher cipher;
         try {
-            cipher = Cipher.getInstance(ENCRYPTION_ALGORITHM);
-            cipher.init(Cipher.ENCRYPT_MODE, secretKey);
+            Cipher cipher = borrowCipher(encryptCiphers, Cipher.ENCRYPT_MODE);
             byte[] encrypted = cipher.doFinal(data.getBytes());
+            encryptCiphers.offer(cipher);
 
             return Base64.getEncoder().encodeToString(encrypted);
         } catch (NoSuchAlgorithmException | NoSuchPaddingException | InvalidKeyException | IllegalBlockSizeException
@@ -53,16 +64,29 @@ public class Rijndael implements SymmetricBlockCipher {
 
     @Override
     public String decrypt(String encryptedData) throws CipherException {
-        Cipher cipher;
         try {
-            cipher = Cipher.getInstance(ENCRYPTION_ALGORITHM);
-            cipher.init(Cipher.DECRYPT_MODE, secretKey);
-
+            Cipher cipher = borrowCipher(decryptCiphers, Cipher.DECRYPT_MODE);
             byte[] decrypted = cipher.doFinal(Base64.getDecoder().decode(encryptedData));
+            decryptCiphers.offer(cipher);
+
             return new String(decrypted);
         } catch (NoSuchAlgorithmException | NoSuchPaddingException | InvalidKeyException | IllegalBlockSizeException
                  | BadPaddingException e) {
             throw new CipherException("The decrypt operation cannot be completed successfully", e.getCause());
         }
     }
+
+    /**
+     * A cipher is back in its initialized state after doFinal, so it can be reused without another init. A cipher
+     * that failed is not returned to the pool.
+     */
+    private Cipher borrowCipher(BlockingQueue<Cipher> pool, int mode)
+        throws NoSuchPaddingException, NoSuchAlgorithmException, InvalidKeyException {
+        Cipher cipher = pool.poll();
+        if (cipher == null) {
+            cipher = Cipher.getInstance(ENCRYPTION_ALGORITHM);
+            cipher.init(mode, secretKey);
+        }
+        return cipher;
+    }
 }
@@ -1,67 +1,57 @@
 package bg.sofia.uni.fmi.mjt.spotify.client;
 
 import bg.sofia.uni.fmi.mjt.spotify.song.SerializableAudioFormat;
-import com.google.gson.Gson;
 
 import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.AudioSystem;
 import javax.sound.sampled.DataLine;
 import javax.sound.sampled.LineUnavailableException;
 import javax.sound.sampled.SourceDataLine;
-import java.io.IOException;
-import java.nio.ByteBuffer;
-import java.nio.channels.SocketChannel;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
 
 public class MusicClientThread implements Runnable {
-    private final SocketChannel clientChannel;
-    private final Gson gson;
-    private static final int BUFFER_SIZE = 10004;
-    private boolean isMusicStopped = false;
+    private static final byte[] END_OF_SONG = new byte[0];
+    private final SerializableAudioFormat serializableAudioFormat;
+    private final BlockingQueue<byte[]> audioChunks;
+    private volatile boolean isMusicStopped = false;
 
-    public MusicClientThread(SocketChannel clientChannel) {
-        this.clientChannel = clientChannel;
-        this.gson = new Gson();
+    public MusicClientThread(SerializableAudioFormat serializableAudioFormat) {
+        this.serializableAudioFormat = serializableAudioFormat;
+        this.audioChunks = new LinkedBlockingQueue<>();
     }
 
     @Override
     public void run() {
         try {
-            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
-            String audioFormatJson = getAudioFormatJson(buffer);
-            SerializableAudioFormat serializableAudioFormat = gson.fromJson(audioFormatJson,
-                SerializableAudioFormat.class);
             DataLine.Info info = getInfo(serializableAudioFormat);
             SourceDataLine sourceDataLine = (SourceDataLine) AudioSystem.getLine(info);
             sourceDataLine.open();
             sourceDataLine.start();
-            byte[] byteArray = new byte[BUFFER_SIZE];
-            int readBytes = 0;
-            buffer.clear();
-            while (!isMusicStopped && (readBytes = clientChannel.read(buffer)) != -1) {
-                buffer.flip();
-                buffer.get(byteArray, 0, readBytes);
-                String checkMessage = new String(byteArray);
-                if (checkMessage.contains("END") || checkMessage.contains("Successfully stop streaming ")) {
-                    break;
-                }
-                sourceDataLine.write(byteArray, 0, readBytes);
-                buffer.clear();
+            byte[] chunk;
+            while (!isMusicStopped && (chunk = audioChunks.take()) != END_OF_SONG) {
+                sourceDataLine.write(chunk, 0, chunk.length);
+            }
+            if (isMusicStopped) {
+                sourceDataLine.flush();
+            } else {
+                sourceDataLine.drain();
             }
             isMusicStopped = true;
-            sourceDataLine.drain();
             sourceDataLine.close();
-        } catch (IOException | LineUnavailableException e) {
+        } catch (LineUnavailableException e) {
             System.out.println("A problem occurred while streaming audio " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
 
-    private String getAudioFormatJson(ByteBuffer buffer) throws IOException {
-        clientChannel.read(buffer);
-        buffer.flip();
+    public void play(byte[] chunk) {
+        audioChunks.offer(chunk);
+    }
 
-        byte[] audioFormatBytes = new byte[buffer.remaining()];
-        buffer.get(audioFormatBytes);
-        return new String(audioFormatBytes);
+    public void endOfSong() {
+        audioChunks.offer(END_OF_SONG);
     }
 
     private DataLine.Info getInfo(SerializableAudioFormat serializableAudioFormat) {
@@ -75,5 +65,6 @@ public class MusicClientThread implements Runnable {
 
     public void stopMusic() {
         isMusicStopped = true;
+        audioChunks.offer(END_OF_SONG);
     }
 }
@@ -0,0 +1,84 @@
+package bg.sofia.uni.fmi.mjt.spotify.client;
+
+import bg.sofia.uni.fmi.mjt.spotify.protocol.Frame;
+import bg.sofia.uni.fmi.mjt.spotify.protocol.FrameReader;
+import bg.sofia.uni.fmi.mjt.spotify.song.SerializableAudioFormat;
+import com.google.gson.Gson;
+
+import java.io.IOException;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.BlockingQueue;
+
+public class ServerListenerThread implements Runnable {
+    public static final String CONNECTION_LOST = "Connection to the server was lost";
+
+    private final SocketChannel socketChannel;
+    private final BlockingQueue<ServerReply> replies;
+    private final FrameReader frameReader;
+    private final Gson gson;
+    private MusicClientThread musicThread;
+
+    public ServerListenerThread(SocketChannel socketChannel, BlockingQueue<ServerReply> replies) {
+        this.socketChannel = socketChannel;
+        this.replies = replies;
+        this.frameReader = new FrameReader();
+        this.gson = new Gson();
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (frameReader.readFrom(socketChannel) >= 0) {
+                Frame frame;
+                while ((frame = frameReader.nextFrame()) != null) {
+                    dispatch(frame);
+                }
+            }
+        } catch (IOException e) {
+            if (socketChannel.isOpen()) {
+                System.out.println("Lost connection to the server " + e.getMessage());
+            }
+        } finally {
+            stopMusic();
+            if (socketChannel.isOpen()) {
+                replies.offer(ServerReply.connectionLost(this));
+            }
+        }
+    }
+
+    public synchronized void stopMusic() {
+        if (musicThread != null) {
+            musicThread.stopMusic();
+            musicThread = null;
+        }
+    }
+
+    private void dispatch(Frame frame) throws IOException {
+        switch (frame.type()) {
+            case REPLY -> replies.offer(ServerReply.of(this, frame.text()));
+            case AUDIO_FORMAT -> startMusic(gson.fromJson(frame.text(), SerializableAudioFormat.class));
+            case AUDIO_CHUNK -> playChunk(frame.payload());
+            case AUDIO_END -> endOfSong();
+            default -> throw new IOException("Unexpected frame type from server " + frame.type());
+        }
+    }
+
+    private synchronized void startMusic(SerializableAudioFormat serializableAudioFormat) {
+        stopMusic();
+        musicThread = new MusicClientThread(serializableAudioFormat);
+        new Thread(musicThread).start();
+    }
+
+    private synchronized void playChunk(byte[] chunk) {
+        if (musicThread != null) {
+            musicThread.play(chunk);
+        }
+    }
+
+    private synchronized void endOfSong() {
+        if (musicThread != null) {
+            musicThread.endOfSong();
+            musicThread = null;
+        }
+    }
+}
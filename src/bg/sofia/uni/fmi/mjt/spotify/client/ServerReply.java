@@ -0,0 +1,15 @@
+package bg.sofia.uni.fmi.mjt.spotify.client;
+
+/**
+ * A reply of the server or the signal that the connection was lost, tagged with the listener that received it, so a
+ * client that has reconnected can ignore what the listener of an old connection left behind.
+ */
+public record ServerReply(ServerListenerThread listener, String text, boolean isConnectionLost) {
+    public static ServerReply of(ServerListenerThread listener, String text) {
+        return new ServerReply(listener, text, false);
+    }
+
+    public static ServerReply connectionLost(ServerListenerThread listener) {
+        return new ServerReply(listener, ServerListenerThread.CONNECTION_LOST, true);
+    }
+}
@@ -1,24 +1,30 @@
 package bg.sofia.uni.fmi.mjt.spotify.client;
 
+import bg.sofia.uni.fmi.mjt.spotify.command.CommandExecutor;
 import bg.sofia.uni.fmi.mjt.spotify.command.CommandType;
+import bg.sofia.uni.fmi.mjt.spotify.protocol.Frame;
+import bg.sofia.uni.fmi.mjt.spotify.protocol.FrameCodec;
+import bg.sofia.uni.fmi.mjt.spotify.protocol.FrameType;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.net.InetSocketAddress;
-import java.nio.ByteBuffer;
 import java.nio.channels.SocketChannel;
-import java.nio.charset.StandardCharsets;
 import java.util.Scanner;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
 
 public class SpotifyClient {
     private final int serverPort;
-    private MusicClientThread musicThread;
+    private final BlockingQueue<ServerReply> replies;
     private static final String SERVER_HOST = "localhost";
-    private static final int BUFFER_SIZE = 1024;
-    private static ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private SocketChannel socketChannel;
+    private ServerListenerThread listener;
+    private String sessionToken;
 
     public SpotifyClient(int serverPort) {
         this.serverPort = serverPort;
+        this.replies = new LinkedBlockingQueue<>();
     }
 
     public static void main(String[] args) {
@@ -29,56 +35,92 @@ public class SpotifyClient {
 
     public void start() {
         printCommandLineInterface();
-        try (SocketChannel socketChannel = SocketChannel.open();
-             Scanner scanner = new Scanner(System.in)) {
-            socketChannel.connect(new InetSocketAddress(SERVER_HOST, serverPort));
+        try (Scanner scanner = new Scanner(System.in)) {
+            connect();
             while (true) {
                 System.out.println("Please enter one of the commands: ");
                 String command = scanner.nextLine();
-                sendCommandToServer(command, socketChannel);
-                if (command.startsWith(CommandType.PLAY.toString())) {
-                    musicThread = new MusicClientThread(socketChannel);
-                    Thread playMusicThread = new Thread(musicThread);
-                    playMusicThread.start();
-                } else if (command.startsWith(CommandType.STOP.toString())) {
+                ServerReply reply = execute(command);
+                if (reply.isConnectionLost()) {
+                    reconnect();
                     continue;
                 }
-                String reply = getServerReply(socketChannel);
-                System.out.println(reply + System.lineSeparator());
-                if (reply.equals("Successfully stop streaming ")) {
-                    musicThread.stopMusic();
+                System.out.println(reply.text() + System.lineSeparator());
+                rememberSessionToken(reply.text());
+                if (command.startsWith(CommandType.STOP.toString())) {
+                    listener.stopMusic();
                 }
                 if (CommandType.DISCONNECT.toString().equals(command)) {
+                    listener.stopMusic();
+                    socketChannel.close();
                     break;
                 }
             }
         } catch (IOException e) {
             throw new UncheckedIOException("Unable to connect to the server.Try again later or contact administrator " +
                 "by providing the logs in <path_to_logs_file> ", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
 
-    private static void sendCommandToServer(String command, SocketChannel socketChannel) throws IOException {
-        buffer.clear();
-        buffer.put(command.getBytes());
-        buffer.flip();
+    private void connect() throws IOException {
+        socketChannel = SocketChannel.open();
+        socketChannel.connect(new InetSocketAddress(SERVER_HOST, serverPort));
+        listener = new ServerListenerThread(socketChannel, replies);
+        Thread listenerThread = new Thread(listener);
+        listenerThread.setDaemon(true);
+        listenerThread.start();
+    }
+
+    /**
+     * Sends the command and waits for its reply. Replies and lost connection signals left by the listeners of
+     * previous connections are skipped.
+     */
+    private ServerReply execute(String command) throws InterruptedException {
+        try {
+            sendCommandToServer(command, socketChannel);
+        } catch (IOException e) {
+            return ServerReply.connectionLost(listener);
+        }
+        ServerReply reply;
+        do {
+            reply = replies.take();
+        } while (reply.listener() != listener);
+        return reply;
+    }
 
-        socketChannel.write(buffer);
+    /**
+     * Opens a new connection and, if the client was logged in, resumes its session without logging in again.
+     */
+    private void reconnect() throws IOException, InterruptedException {
+        System.out.println(ServerListenerThread.CONNECTION_LOST + ". Reconnecting...");
+        listener.stopMusic();
+        socketChannel.close();
+        replies.clear();
+        connect();
+        if (sessionToken != null) {
+            ServerReply reply = execute(CommandType.RESUME + " " + sessionToken);
+            System.out.println(reply.text() + System.lineSeparator());
+        }
+        System.out.println("Please enter the command again");
     }
 
-    private static String getServerReply(SocketChannel socketChannel) throws IOException {
-        buffer.clear();
-        socketChannel.read(buffer);
-        buffer.flip();
+    private void rememberSessionToken(String reply) {
+        int tokenIndex = reply.indexOf(CommandExecutor.SESSION_TOKEN_PREFIX);
+        if (tokenIndex >= 0) {
+            sessionToken = reply.substring(tokenIndex + CommandExecutor.SESSION_TOKEN_PREFIX.length()).strip();
+        }
+    }
 
-        byte[] byteArray = new byte[buffer.remaining()];
-        buffer.get(byteArray);
-        return new String(byteArray, StandardCharsets.UTF_8);
+    private static void sendCommandToServer(String command, SocketChannel socketChannel) throws IOException {
+        FrameCodec.writeFully(socketChannel, Frame.of(FrameType.COMMAND, command));
     }
 
     private void printCommandLineInterface() {
         System.out.println("register \"<email>\" \"<password>\"");
         System.out.println("login \"<email>\" \"<password>\"");
+        System.out.println("resume <session_token>");
         System.out.println("disconnect");
         System.out.println("search \"<words>\"");
         System.out.println("top <number>");
@@ -87,6 +129,7 @@ public class SpotifyClient {
         System.out.println("show-playlist \"<name_of_the_playlist>\"");
         System.out.println("play \"<song name>\" \"<singer name>\"");
         System.out.println("stop");
+        System.out.println("stats");
         System.out.println();
     }
 }
@@ -1,70 +1,120 @@
 package bg.sofia.uni.fmi.mjt.spotify.command;
 
-import java.util.ArrayList;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
-import java.util.List;
 
+/**
+ * Splits the input of a client into a command and its arguments. Tokens are separated by spaces outside of quotes,
+ * the quotes themselves are dropped and blank tokens are skipped.
+ *
+ * <p>The input is tokenized directly on its UTF-8 bytes. A space or a quote byte can never be part of a multi-byte
+ * character, so the token bounds are found without decoding, the command is resolved from its bytes and only the
+ * arguments are turned into strings.</p>
+ */
 public class CommandCreator {
-    private static final char QUOTE = '"';
-    private static final char SPACE = ' ';
-    private static final String QUOTE_STR = "\"";
-    private static final String EMPTY_STR = "";
-    private static final String SPACE_STR = " ";
-    private static final int COMMAND_INDEX = 0;
-    private static final int FIRST_ARGUMENT_INDEX = 1;
+    private static final byte QUOTE = '"';
+    private static final byte SPACE = ' ';
+    private static final String[] NO_ARGUMENTS = new String[0];
+    private static final int INITIAL_TOKENS_CAPACITY = 8;
+
     public static Command newCommand(String clientInput) {
-        List<String> tokens = CommandCreator.getArgumentsOfCommand(clientInput);
-        String clientCommand = tokens.get(COMMAND_INDEX);
+        byte[] bytes = clientInput.getBytes(StandardCharsets.UTF_8);
+        return newCommand(bytes, 0, bytes.length);
+    }
 
-        CommandType command =  Arrays.stream(CommandType.values())
-            .filter(commandType -> commandType.toString().equalsIgnoreCase(clientCommand))
-            .findFirst()
-            .orElse(CommandType.UNKNOWN);
+    /**
+     * Parses the command from the remaining bytes of the buffer, without changing its position.
+     */
+    public static Command newCommand(ByteBuffer clientInput) {
+        if (clientInput.hasArray()) {
+            return newCommand(clientInput.array(), clientInput.arrayOffset() + clientInput.position(),
+                clientInput.remaining());
+        }
+        byte[] bytes = new byte[clientInput.remaining()];
+        clientInput.get(clientInput.position(), bytes);
+        return newCommand(bytes, 0, bytes.length);
+    }
 
-        String[] arguments = tokens.subList(FIRST_ARGUMENT_INDEX, tokens.size()).toArray(new String[]{});
+    private static Command newCommand(byte[] input, int offset, int length) {
+        int[] tokenBounds = new int[INITIAL_TOKENS_CAPACITY * 2];
+        int tokensCount = 0;
+        int tokenStart = -1;
+        boolean isInsideQuote = false;
+        boolean isBlank = true;
+        int end = offset + length;
+        for (int i = offset; i <= end; i++) {
+            byte current = i < end ? input[i] : SPACE;
+            if (current == SPACE && !isInsideQuote || i == end) {
+                if (tokenStart >= 0 && !isBlank) {
+                    if (tokensCount * 2 == tokenBounds.length) {
+                        tokenBounds = Arrays.copyOf(tokenBounds, tokenBounds.length * 2);
+                    }
+                    tokenBounds[tokensCount * 2] = tokenStart;
+                    tokenBounds[tokensCount * 2 + 1] = i;
+                    tokensCount++;
+                }
+                tokenStart = -1;
+                isBlank = true;
+                continue;
+            }
+            if (tokenStart < 0) {
+                tokenStart = i;
+            }
+            if (current == QUOTE) {
+                isInsideQuote = !isInsideQuote;
+            } else if (!isWhitespace(current)) {
+                isBlank = false;
+            }
+        }
 
+        if (tokensCount == 0) {
+            return new Command(CommandType.UNKNOWN, NO_ARGUMENTS);
+        }
+        CommandType command = getCommandType(input, tokenBounds[0], tokenBounds[1]);
+        String[] arguments = tokensCount == 1 ? NO_ARGUMENTS : new String[tokensCount - 1];
+        for (int i = 1; i < tokensCount; i++) {
+            arguments[i - 1] = getToken(input, tokenBounds[i * 2], tokenBounds[i * 2 + 1]);
+        }
         return new Command(command, arguments);
     }
 
-    private static List<String> getArgumentsOfCommand(String input) {
-        if (!input.contains(QUOTE_STR)) {
-            String[] tokens = input.split(SPACE_STR);
-            return Arrays.stream(tokens).toList();
-        } else {
-            return getTokensOfCommandWithQuotes(input);
+    private static CommandType getCommandType(byte[] input, int start, int end) {
+        if (indexOfQuote(input, start, end) < 0) {
+            return CommandType.fromName(input, start, end - start);
         }
+        byte[] unquoted = removeQuotes(input, start, end);
+        return CommandType.fromName(unquoted, 0, unquoted.length);
     }
 
-    private static List<String> getTokensOfCommandWithQuotes(String input) {
-        List<String> tokens = new ArrayList<>();
-        StringBuilder stringBuilder = new StringBuilder();
-        boolean insideQuote = false;
+    private static String getToken(byte[] input, int start, int end) {
+        if (indexOfQuote(input, start, end) < 0) {
+            return new String(input, start, end - start, StandardCharsets.UTF_8);
+        }
+        return new String(removeQuotes(input, start, end), StandardCharsets.UTF_8);
+    }
 
-        for (char ch : input.toCharArray()) {
-            if (ch == QUOTE) {
-                insideQuote = !insideQuote;
-            }
-            if (ch == SPACE && !insideQuote) {
-                String currentArgument = getCurrentArgument(stringBuilder);
-                if (currentArgument.isBlank()) {
-                    continue;
-                }
-                tokens.add(currentArgument);
-                stringBuilder.delete(0, stringBuilder.length());
-            } else {
-                stringBuilder.append(ch);
+    private static byte[] removeQuotes(byte[] input, int start, int end) {
+        byte[] unquoted = new byte[end - start];
+        int length = 0;
+        for (int i = start; i < end; i++) {
+            if (input[i] != QUOTE) {
+                unquoted[length++] = input[i];
             }
         }
+        return Arrays.copyOf(unquoted, length);
+    }
 
-        String currentArgument = getCurrentArgument(stringBuilder);
-        if (!currentArgument.isBlank()) {
-            tokens.add(currentArgument);
+    private static int indexOfQuote(byte[] input, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (input[i] == QUOTE) {
+                return i;
+            }
         }
-
-        return tokens;
+        return -1;
     }
 
-    private static String getCurrentArgument(StringBuilder stringBuilder) {
-        return stringBuilder.toString().replace(QUOTE_STR, EMPTY_STR);
+    private static boolean isWhitespace(byte current) {
+        return current == SPACE || current >= '\t' && current <= '\r' || current >= 0x1C && current <= 0x1F;
     }
 }
@@ -8,15 +8,20 @@ import bg.sofia.uni.fmi.mjt.spotify.exception.NotFoundSongException;
 import bg.sofia.uni.fmi.mjt.spotify.exception.NotFoundUserException;
 import bg.sofia.uni.fmi.mjt.spotify.exception.PlaylistAlreadyExistsException;
 import bg.sofia.uni.fmi.mjt.spotify.exception.SongAlreadyExistsException;
+import bg.sofia.uni.fmi.mjt.spotify.exception.StreamLimitExceededException;
 import bg.sofia.uni.fmi.mjt.spotify.exception.UserAlreadyExistsException;
 import bg.sofia.uni.fmi.mjt.spotify.exception.WeakPasswordException;
+import bg.sofia.uni.fmi.mjt.spotify.metrics.LatencyHistogram;
+import bg.sofia.uni.fmi.mjt.spotify.metrics.MetricsRegistry;
 import bg.sofia.uni.fmi.mjt.spotify.song.Playlist;
 import bg.sofia.uni.fmi.mjt.spotify.song.Song;
 
 import java.nio.channels.SelectionKey;
 import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -26,13 +31,18 @@ import static bg.sofia.uni.fmi.mjt.spotify.command.CommandType.DISCONNECT;
 import static bg.sofia.uni.fmi.mjt.spotify.command.CommandType.LOGIN;
 import static bg.sofia.uni.fmi.mjt.spotify.command.CommandType.PLAY;
 import static bg.sofia.uni.fmi.mjt.spotify.command.CommandType.REGISTER;
+import static bg.sofia.uni.fmi.mjt.spotify.command.CommandType.RESUME;
 import static bg.sofia.uni.fmi.mjt.spotify.command.CommandType.SHOW_PLAYLIST;
+import static bg.sofia.uni.fmi.mjt.spotify.command.CommandType.STATS;
 import static bg.sofia.uni.fmi.mjt.spotify.command.CommandType.STOP;
 import static bg.sofia.uni.fmi.mjt.spotify.command.CommandType.TOP;
 
 public class CommandExecutor {
     private final Spotify spotify;
     private final ExceptionHandler exceptionHandler;
+    private final MetricsRegistry metrics;
+    private final Map<CommandType, LatencyHistogram> commandLatencies;
+    public static final String SESSION_TOKEN_PREFIX = "Session token: ";
     private static final int MAX_ARGUMENTS_COUNT = 3;
     private static final int ONE_ARGUMENT = 1;
     private static final int TWO_ARGUMENTS = 2;
@@ -46,18 +56,35 @@ public class CommandExecutor {
         " administrator by providing the logs in errors.txt";
 
     public CommandExecutor(Spotify spotify) {
-        this.spotify = spotify;
-        this.exceptionHandler = new ExceptionHandler();
+        this(spotify, new ExceptionHandler());
     }
 
+    /**
+     * Records the latency of every command type in the default metrics registry.
+     */
     public CommandExecutor(Spotify spotify, ExceptionHandler exceptionHandler) {
         this.spotify = spotify;
         this.exceptionHandler = exceptionHandler;
+        this.metrics = MetricsRegistry.getDefault();
+        this.commandLatencies = new EnumMap<>(CommandType.class);
+        for (CommandType commandType : CommandType.values()) {
+            commandLatencies.put(commandType, metrics.histogram("command." + commandType));
+        }
     }
 
     public String execute(Command command, SelectionKey clientSelectionKey) {
+        long startNanos = System.nanoTime();
+        try {
+            return executeCommand(command, clientSelectionKey);
+        } finally {
+            commandLatencies.get(command.command()).record(System.nanoTime() - startNanos);
+        }
+    }
+
+    private String executeCommand(Command command, SelectionKey clientSelectionKey) {
         if (spotify.getIsUserLogged(clientSelectionKey)) {
             String currentUserEmail = spotify.getUsernameOfCurrentUser(clientSelectionKey);
+            spotify.recordCommand(clientSelectionKey);
             return switch (command.command()) {
                 case DISCONNECT -> disconnect(command.arguments(), clientSelectionKey);
                 case SEARCH -> search(command.arguments(), currentUserEmail);
@@ -66,7 +93,8 @@ public class CommandExecutor {
                 case ADD_SONG_TO -> addSongTo(command.arguments(), currentUserEmail);
                 case SHOW_PLAYLIST -> showPlaylist(command.arguments(), currentUserEmail);
                 case PLAY -> play(command.arguments(), clientSelectionKey, currentUserEmail);
-                case STOP -> stopSong(command.arguments(), currentUserEmail);
+                case STOP -> stopSong(command.arguments(), clientSelectionKey, currentUserEmail);
+                case STATS -> stats(command.arguments());
                 case UNKNOWN -> "Unknown command. Please enter valid command";
                 default -> "This command is not available when you are logged in. You should disconnect first";
             };
@@ -74,6 +102,7 @@ public class CommandExecutor {
             return switch (command.command()) {
                 case REGISTER -> register(command.arguments());
                 case LOGIN -> login(command.arguments(), clientSelectionKey);
+                case RESUME -> resume(command.arguments(), clientSelectionKey);
                 case DISCONNECT -> disconnect(command.arguments(), clientSelectionKey);
                 case UNKNOWN -> "Unknown command. Please enter valid command";
                 default -> "You need to login or register to execute this command";
@@ -81,6 +110,13 @@ public class CommandExecutor {
         }
     }
 
+    /**
+     * Called when the connection of the client is lost without a disconnect command.
+     */
+    public void connectionClosed(SelectionKey clientSelectionKey) {
+        spotify.connectionClosed(clientSelectionKey);
+    }
+
     private String register(String[] commandArguments) {
         if (commandArguments.length != TWO_ARGUMENTS) {
             return String.format(INVALID_ARGUMENTS_COUNT_MESSAGE_FORMAT, REGISTER, TWO_ARGUMENTS,
@@ -105,9 +141,9 @@ public class CommandExecutor {
                 LOGIN + " <email> <password>");
         }
         try {
-            spotify.login(commandArguments[FIRST_ARGUMENT_INDEX], commandArguments[SECOND_ARGUMENT_INDEX],
-                selectionKey);
-            return "Login successful";
+            String sessionToken = spotify.login(commandArguments[FIRST_ARGUMENT_INDEX],
+                commandArguments[SECOND_ARGUMENT_INDEX], selectionKey);
+            return "Login successful" + System.lineSeparator() + SESSION_TOKEN_PREFIX + sessionToken;
         } catch (NotFoundUserException | CipherException e) {
             exceptionHandler.handleException(e, commandArguments[FIRST_ARGUMENT_INDEX]);
             return e.getMessage();
@@ -117,6 +153,22 @@ public class CommandExecutor {
         }
     }
 
+    private String resume(String[] commandArguments, SelectionKey selectionKey) {
+        if (commandArguments.length != ONE_ARGUMENT) {
+            return String.format(INVALID_ARGUMENTS_COUNT_MESSAGE_FORMAT, RESUME, ONE_ARGUMENT,
+                RESUME + " <session_token>");
+        }
+        try {
+            if (!spotify.resume(commandArguments[FIRST_ARGUMENT_INDEX], selectionKey)) {
+                return "Unable to resume the session. It has expired or does not exist. Please login again";
+            }
+            return "Session resumed for " + spotify.getUsernameOfCurrentUser(selectionKey);
+        } catch (Exception e) {
+            exceptionHandler.handleException(e, UNKNOWN_USER);
+            return ERROR_OCCURRED_MESSAGE;
+        }
+    }
+
     private String disconnect(String[] commandArguments, SelectionKey selectionKey) {
         if (commandArguments.length >= ONE_ARGUMENT) {
             return String.format(INVALID_ARGUMENTS_COUNT_MESSAGE_FORMAT, DISCONNECT, 0, DISCONNECT);
@@ -234,7 +286,7 @@ public class CommandExecutor {
             spotify.play(commandArguments[FIRST_ARGUMENT_INDEX], commandArguments[SECOND_ARGUMENT_INDEX], selectionKey);
             return "Streaming: " + commandArguments[FIRST_ARGUMENT_INDEX] + " By " +
                 commandArguments[SECOND_ARGUMENT_INDEX];
-        } catch (NotFoundSongException e) {
+        } catch (NotFoundSongException | StreamLimitExceededException e) {
             exceptionHandler.handleException(e, currentUserEmail);
             return e.getMessage();
         } catch (Exception e) {
@@ -243,17 +295,24 @@ public class CommandExecutor {
         }
     }
 
-    private String stopSong(String[] commandArguments, String currentUserEmail) {
+    private String stopSong(String[] commandArguments, SelectionKey selectionKey, String currentUserEmail) {
         if (commandArguments.length >= ONE_ARGUMENT) {
             return String.format(INVALID_ARGUMENTS_COUNT_MESSAGE_FORMAT, STOP, 0,
                 STOP);
         }
         try {
-            spotify.stopSong();
+            spotify.stopSong(selectionKey);
             return "Successfully stop streaming ";
         } catch (Exception e) {
             exceptionHandler.handleException(e, currentUserEmail);
             return ERROR_OCCURRED_MESSAGE;
         }
     }
+
+    private String stats(String[] commandArguments) {
+        if (commandArguments.length >= ONE_ARGUMENT) {
+            return String.format(INVALID_ARGUMENTS_COUNT_MESSAGE_FORMAT, STATS, 0, STATS);
+        }
+        return metrics.report();
+    }
 }
@@ -1,8 +1,12 @@
 package bg.sofia.uni.fmi.mjt.spotify.command;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
 public enum CommandType {
     REGISTER("register"),
     LOGIN("login"),
+    RESUME("resume"),
     DISCONNECT("disconnect"),
     SEARCH("search"),
     TOP("top"),
@@ -11,12 +15,58 @@ public enum CommandType {
     SHOW_PLAYLIST("show-playlist"),
     PLAY("play"),
     STOP("stop"),
+    STATS("stats"),
     UNKNOWN("unknown");
 
+    private static final CommandType[][] BY_NAME_LENGTH;
+
+    static {
+        int maxLength = Arrays.stream(values()).mapToInt(type -> type.nameBytes.length).max().orElse(0);
+        BY_NAME_LENGTH = new CommandType[maxLength + 1][0];
+        for (CommandType type : values()) {
+            CommandType[] sameLength = BY_NAME_LENGTH[type.nameBytes.length];
+            BY_NAME_LENGTH[type.nameBytes.length] = Arrays.copyOf(sameLength, sameLength.length + 1);
+            BY_NAME_LENGTH[type.nameBytes.length][sameLength.length] = type;
+        }
+    }
+
     private final String value;
+    private final byte[] nameBytes;
 
     CommandType(String value) {
         this.value = value;
+        this.nameBytes = value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Finds the command by its name in UTF-8, ignoring the case of ASCII letters. Only the few commands with a name
+     * of the same length are compared.
+     *
+     * @return the command or {@link #UNKNOWN} if there is no command with this name
+     */
+    public static CommandType fromName(byte[] bytes, int offset, int length) {
+        if (length >= BY_NAME_LENGTH.length) {
+            return UNKNOWN;
+        }
+        for (CommandType type : BY_NAME_LENGTH[length]) {
+            if (type.hasName(bytes, offset)) {
+                return type;
+            }
+        }
+        return UNKNOWN;
+    }
+
+    private boolean hasName(byte[] bytes, int offset) {
+        for (int i = 0; i < nameBytes.length; i++) {
+            byte current = bytes[offset + i];
+            if (current >= 'A' && current <= 'Z') {
+                current += 'a' - 'A';
+            }
+            if (current != nameBytes[i]) {
+                return false;
+            }
+        }
+        return true;
     }
 
     public String toString() {
@@ -1,26 +1,220 @@
 package bg.sofia.uni.fmi.mjt.spotify.exception;
 
-import java.io.BufferedWriter;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 import java.util.stream.Collectors;
 
-public class ExceptionHandler {
+/**
+ * Logs the exceptions of the clients to the errors file without blocking the threads that report them. Reported
+ * exceptions go into a lock-free ring buffer and a background thread formats them and appends them to the file in
+ * batches, one write per batch. When the buffer is full new exceptions are dropped and counted, and the file gets a
+ * line with the number of dropped exceptions instead.
+ *
+ * <p>Once the file grows over its maximum size it is renamed to {@code errors.txt.1}, the older files are shifted to
+ * {@code .2} and up to {@link #MAX_ROLLED_FILES}, and a new file is started.</p>
+ */
+public class ExceptionHandler implements AutoCloseable {
+    public static final int DEFAULT_CAPACITY = 4096;
+    public static final long DEFAULT_MAX_FILE_BYTES = 10 * 1024 * 1024;
+    public static final int MAX_ROLLED_FILES = 5;
     private static final String ERRORS_FILE_PATH = "errors.txt";
     private static final String SPACE = " ";
+    private static final String THREAD_NAME = "spotify-error-writer";
+    private static final int MAX_BATCH_SIZE = 512;
+    private static final long FLUSH_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
 
+    private final Path file;
+    private final long maxFileBytes;
+    private final RingBuffer<ReportedException> errors;
+    private final AtomicLong droppedCount;
+    private final AtomicLong writtenCount;
+    private final AtomicInteger activeReportsCount;
+    private final Thread writer;
+    private volatile boolean isAccepting;
+    private volatile boolean isRunning;
+    private long reportedDroppedCount;
+    private FileChannel channel;
+    private long fileBytes;
+
+    public ExceptionHandler() {
+        this(Path.of(ERRORS_FILE_PATH), DEFAULT_CAPACITY, DEFAULT_MAX_FILE_BYTES);
+    }
+
+    /**
+     * @param capacity how many exceptions can wait to be written before new ones are dropped
+     */
+    public ExceptionHandler(Path file, int capacity, long maxFileBytes) {
+        this.file = file;
+        this.maxFileBytes = maxFileBytes;
+        this.errors = new RingBuffer<>(capacity);
+        this.droppedCount = new AtomicLong();
+        this.writtenCount = new AtomicLong();
+        this.activeReportsCount = new AtomicInteger();
+        this.isAccepting = true;
+        this.isRunning = true;
+        this.writer = new Thread(this::writeErrors, THREAD_NAME);
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Queues the exception to be written, or counts it as dropped if the buffer is full or the handler is closed.
+     */
     public void handleException(Exception e, String userEmail) {
-        try (BufferedWriter bufferedWriter = new BufferedWriter(new FileWriter(ERRORS_FILE_PATH, true))) {
-            bufferedWriter.write("User: " + userEmail + SPACE);
-            String stackTrace = Arrays.stream(e.getStackTrace())
-                .map(StackTraceElement::toString)
-                .collect(Collectors.joining(SPACE));
-            bufferedWriter.write("Exception stack trace:  " + stackTrace);
-            bufferedWriter.newLine();
-            bufferedWriter.flush();
-        } catch (IOException ex) {
-            throw new IllegalStateException("A problem occurred while writing to a file", ex);
+        activeReportsCount.incrementAndGet();
+        try {
+            if (!isAccepting || !errors.offer(new ReportedException(e, userEmail))) {
+                droppedCount.incrementAndGet();
+            }
+        } finally {
+            activeReportsCount.decrementAndGet();
+        }
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    public long getWrittenCount() {
+        return writtenCount.get();
+    }
+
+    /**
+     * Stops accepting exceptions, waits for the reports that are in progress, then writes the exceptions that are
+     * still waiting and stops the background thread. Every reported exception is either written or counted as dropped.
+     */
+    @Override
+    public void close() {
+        isAccepting = false;
+        while (activeReportsCount.get() > 0) {
+            Thread.onSpinWait();
+        }
+        isRunning = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeErrors() {
+        while (isRunning) {
+            if (writeBatch() == 0) {
+                LockSupport.parkNanos(FLUSH_INTERVAL_NANOS);
+            }
+        }
+        int linesCount;
+        do {
+            linesCount = writeBatch();
+        } while (linesCount > 0);
+        while (errors.poll() != null) {
+            droppedCount.incrementAndGet();
+        }
+        closeChannel();
+    }
+
+    /**
+     * A batch that cannot be written is counted as dropped, so every reported exception is still either written or
+     * dropped, and the next batch that is written reports it.
+     *
+     * @return how many lines were written, 0 if the batch could not be written
+     */
+    private int writeBatch() {
+        StringBuilder batch = new StringBuilder();
+        int errorsCount = 0;
+        ReportedException error;
+        while (errorsCount < MAX_BATCH_SIZE && (error = errors.poll()) != null) {
+            batch.append(format(error)).append(System.lineSeparator());
+            errorsCount++;
         }
+        int linesCount = errorsCount;
+        long previouslyReportedDroppedCount = reportedDroppedCount;
+        long dropped = droppedCount.get();
+        if (dropped > reportedDroppedCount) {
+            batch.append("Dropped ").append(dropped - reportedDroppedCount)
+                .append(" exceptions because the errors log could not keep up").append(System.lineSeparator());
+            reportedDroppedCount = dropped;
+            linesCount++;
+        }
+        if (linesCount == 0) {
+            return 0;
+        }
+
+        ByteBuffer bytes = ByteBuffer.wrap(batch.toString().getBytes(StandardCharsets.UTF_8));
+        try {
+            rollIfNeeded(bytes.remaining());
+            while (bytes.hasRemaining()) {
+                fileBytes += channel.write(bytes);
+            }
+            writtenCount.addAndGet(errorsCount);
+        } catch (IOException e) {
+            System.out.println("Unable to write " + errorsCount + " exceptions to " + file + ": " + e.getMessage());
+            reportedDroppedCount = previouslyReportedDroppedCount;
+            droppedCount.addAndGet(errorsCount);
+            closeChannel();
+            return 0;
+        }
+        return linesCount;
+    }
+
+    private void rollIfNeeded(int batchBytes) throws IOException {
+        if (channel == null) {
+            openChannel();
+        }
+        if (fileBytes > 0 && fileBytes + batchBytes > maxFileBytes) {
+            closeChannel();
+            for (int i = MAX_ROLLED_FILES - 1; i >= 1; i--) {
+                Path rolledFile = rolledFile(i);
+                if (Files.exists(rolledFile)) {
+                    Files.move(rolledFile, rolledFile(i + 1), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            Files.move(file, rolledFile(1), StandardCopyOption.REPLACE_EXISTING);
+            openChannel();
+        }
+    }
+
+    private void openChannel() throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.APPEND);
+        fileBytes = channel.size();
+    }
+
+    private Path rolledFile(int index) {
+        return file.resolveSibling(file.getFileName() + "." + index);
+    }
+
+    private void closeChannel() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.out.println("Unable to close " + file + ": " + e.getMessage());
+        }
+        channel = null;
+    }
+
+    private static String format(ReportedException error) {
+        String stackTrace = Arrays.stream(error.exception().getStackTrace())
+            .map(StackTraceElement::toString)
+            .collect(Collectors.joining(SPACE));
+        return "User: " + error.userEmail() + SPACE + "Exception stack trace:  " + stackTrace;
+    }
+
+    private record ReportedException(Exception exception, String userEmail) {
     }
 }
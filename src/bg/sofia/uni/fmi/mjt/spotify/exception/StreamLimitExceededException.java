@@ -0,0 +1,7 @@
+package bg.sofia.uni.fmi.mjt.spotify.exception;
+
+public class StreamLimitExceededException extends Exception {
+    public StreamLimitExceededException(String message) {
+        super(message);
+    }
+}
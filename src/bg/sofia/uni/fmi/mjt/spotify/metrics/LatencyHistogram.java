@@ -0,0 +1,103 @@
+package bg.sofia.uni.fmi.mjt.spotify.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of latencies in nanoseconds with a fixed relative precision, in the style of HdrHistogram. Every power
+ * of two is split into {@link #SUB_BUCKETS_COUNT} equal buckets, so a recorded value is off by less than 1/32 of
+ * itself whatever its magnitude, and recording is a single atomic increment with no allocation.
+ */
+public class LatencyHistogram {
+    public static final int SUB_BUCKETS_COUNT = 32;
+    private static final int SUB_BUCKET_BITS = Integer.numberOfTrailingZeros(SUB_BUCKETS_COUNT);
+    private static final int BUCKETS_COUNT = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS_COUNT;
+    private static final double PERCENT = 100.0;
+
+    private final AtomicLongArray buckets;
+    private final LongAdder count;
+    private final LongAdder total;
+    private final AtomicLong max;
+
+    public LatencyHistogram() {
+        this.buckets = new AtomicLongArray(BUCKETS_COUNT);
+        this.count = new LongAdder();
+        this.total = new LongAdder();
+        this.max = new AtomicLong();
+    }
+
+    /**
+     * @param nanos negative values are recorded as zero
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        buckets.incrementAndGet(bucketOf(value));
+        count.increment();
+        total.add(value);
+        long currentMax = max.get();
+        while (value > currentMax && !max.compareAndSet(currentMax, value)) {
+            currentMax = max.get();
+        }
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        long recorded = count.sum();
+        return recorded == 0 ? 0 : (double) total.sum() / recorded;
+    }
+
+    /**
+     * @param percentile between 0 and 100, for example 99.9
+     * @return the highest value that is equivalent, within the precision, to the value at the percentile, or 0 if
+     * nothing was recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        long[] counts = new long[BUCKETS_COUNT];
+        long recorded = 0;
+        for (int i = 0; i < BUCKETS_COUNT; i++) {
+            counts[i] = buckets.get(i);
+            recorded += counts[i];
+        }
+        if (recorded == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(Math.min(percentile, PERCENT) / PERCENT * recorded));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS_COUNT; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(highestValueOf(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS_COUNT) {
+            return (int) value;
+        }
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS_COUNT + (int) ((value >>> shift) - SUB_BUCKETS_COUNT);
+    }
+
+    static long lowestValueOf(int bucket) {
+        if (bucket < SUB_BUCKETS_COUNT) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS_COUNT - 1;
+        return (long) (SUB_BUCKETS_COUNT + bucket % SUB_BUCKETS_COUNT) << shift;
+    }
+
+    private static long highestValueOf(int bucket) {
+        return bucket + 1 == BUCKETS_COUNT ? Long.MAX_VALUE : lowestValueOf(bucket + 1) - 1;
+    }
+}
@@ -0,0 +1,61 @@
+package bg.sofia.uni.fmi.mjt.spotify.metrics;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically replaces the metrics file with the current report of a registry. The report is written to a temporary
+ * file first, so a reader of the metrics file always sees a whole report.
+ */
+public final class MetricsFileWriter implements AutoCloseable {
+    public static final long DEFAULT_INTERVAL_MILLIS = 60 * 1000;
+    private static final String METRICS_FILE_PATH = "metrics.txt";
+    private static final String TEMP_FILE_EXTENSION = ".tmp";
+    private static final String THREAD_NAME = "spotify-metrics-writer";
+
+    private final MetricsRegistry metrics;
+    private final Path file;
+    private final ScheduledExecutorService scheduler;
+
+    public MetricsFileWriter(MetricsRegistry metrics) {
+        this(metrics, Path.of(METRICS_FILE_PATH), DEFAULT_INTERVAL_MILLIS);
+    }
+
+    public MetricsFileWriter(MetricsRegistry metrics, Path file, long intervalMillis) {
+        this.metrics = metrics;
+        this.file = file;
+        this.scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, THREAD_NAME);
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(this::write, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void write() {
+        Path tempFile = file.resolveSibling(file.getFileName() + TEMP_FILE_EXTENSION);
+        String report = "Metrics at " + Instant.now() + System.lineSeparator() + metrics.report();
+        try {
+            Files.writeString(tempFile, report, StandardCharsets.UTF_8);
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.out.println("Unable to write the metrics file " + file + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Stops the periodic writes and writes the report one last time.
+     */
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        write();
+    }
+}
@@ -0,0 +1,94 @@
+package bg.sofia.uni.fmi.mjt.spotify.metrics;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Named latency histograms, counters and gauges of the server. Metrics are created on their first use and are
+ * never removed, so callers on hot paths should look a metric up once and keep it. The server code records into
+ * the {@link #getDefault() default registry}, which is what the stats command and the metrics file report.
+ */
+public class MetricsRegistry {
+    private static final MetricsRegistry DEFAULT = new MetricsRegistry();
+    private static final double NANOS_IN_MICROSECOND = 1000.0;
+    private static final double[] REPORTED_PERCENTILES = {50, 90, 99, 99.9};
+
+    private final Map<String, LatencyHistogram> histograms;
+    private final Map<String, LongAdder> counters;
+    private final Map<String, LongSupplier> gauges;
+
+    public MetricsRegistry() {
+        this.histograms = new ConcurrentHashMap<>();
+        this.counters = new ConcurrentHashMap<>();
+        this.gauges = new ConcurrentHashMap<>();
+    }
+
+    public static MetricsRegistry getDefault() {
+        return DEFAULT;
+    }
+
+    public LatencyHistogram histogram(String name) {
+        return histograms.computeIfAbsent(name, key -> new LatencyHistogram());
+    }
+
+    public LongAdder counter(String name) {
+        return counters.computeIfAbsent(name, key -> new LongAdder());
+    }
+
+    /**
+     * Registers a value that is read only when the metrics are reported. A gauge registered under the same name
+     * again replaces the previous one. The registry keeps the gauge and everything it reads alive, so gauges are
+     * registered once by the code that creates the server, not by the constructors of the objects they read.
+     */
+    public void gauge(String name, LongSupplier value) {
+        gauges.put(name, value);
+    }
+
+    /**
+     * @return all metrics in a human-readable form, sorted by name, with latencies in microseconds
+     */
+    public String report() {
+        StringBuilder report = new StringBuilder();
+        report.append("Counters:").append(System.lineSeparator());
+        new TreeMap<>(counters).forEach((name, counter) ->
+            report.append("  ").append(name).append(' ').append(counter.sum()).append(System.lineSeparator()));
+
+        report.append("Gauges:").append(System.lineSeparator());
+        new TreeMap<>(gauges).forEach((name, gauge) ->
+            report.append("  ").append(name).append(' ').append(readGauge(gauge)).append(System.lineSeparator()));
+
+        report.append("Latencies (us):").append(System.lineSeparator());
+        new TreeMap<>(histograms).forEach((name, histogram) -> {
+            report.append("  ").append(name)
+                .append(" count=").append(histogram.getCount())
+                .append(" mean=").append(toMicros(histogram.getMean()));
+            for (double percentile : REPORTED_PERCENTILES) {
+                report.append(" p").append(formatPercentile(percentile)).append('=')
+                    .append(toMicros(histogram.getValueAtPercentile(percentile)));
+            }
+            report.append(" max=").append(toMicros(histogram.getMax())).append(System.lineSeparator());
+        });
+        return report.toString();
+    }
+
+    private static String readGauge(LongSupplier gauge) {
+        try {
+            return String.valueOf(gauge.getAsLong());
+        } catch (RuntimeException e) {
+            return "unavailable";
+        }
+    }
+
+    private static String toMicros(double nanos) {
+        return String.format(Locale.ROOT, "%.1f", nanos / NANOS_IN_MICROSECOND);
+    }
+
+    private static String formatPercentile(double percentile) {
+        return percentile == Math.rint(percentile) ? String.valueOf((long) percentile)
+            : String.valueOf(percentile).replace(".", "");
+    }
+}
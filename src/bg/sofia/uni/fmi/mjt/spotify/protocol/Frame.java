@@ -0,0 +1,19 @@
+package bg.sofia.uni.fmi.mjt.spotify.protocol;
+
+import java.nio.charset.StandardCharsets;
+
+public record Frame(FrameType type, byte[] payload) {
+    private static final byte[] EMPTY_PAYLOAD = new byte[0];
+
+    public static Frame of(FrameType type, String text) {
+        return new Frame(type, text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static Frame empty(FrameType type) {
+        return new Frame(type, EMPTY_PAYLOAD);
+    }
+
+    public String text() {
+        return new String(payload, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,110 @@
+package bg.sofia.uni.fmi.mjt.spotify.protocol;
+
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Every frame on the wire is a 4-byte big-endian payload length, a 1-byte {@link FrameType} code and the payload.
+ * Frames from the server may be as large as {@link #MAX_PAYLOAD_SIZE}, while the server accepts commands only up to
+ * {@link #MAX_COMMAND_PAYLOAD_SIZE}, so a client cannot make it hold a large read buffer.
+ */
+public class FrameCodec {
+    public static final int HEADER_SIZE = Integer.BYTES + Byte.BYTES;
+    public static final int MAX_PAYLOAD_SIZE = 16 * 1024 * 1024;
+    public static final int MAX_COMMAND_PAYLOAD_SIZE = 4 * 1024;
+
+    public static ByteBuffer encode(Frame frame) {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + frame.payload().length);
+        buffer.putInt(frame.payload().length);
+        buffer.put(frame.type().getCode());
+        buffer.put(frame.payload());
+        return buffer.flip();
+    }
+
+    public static ByteBuffer encodeHeader(FrameType type, int payloadLength) {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE);
+        buffer.putInt(payloadLength);
+        buffer.put(type.getCode());
+        return buffer.flip();
+    }
+
+    /**
+     * Consumes one frame from a buffer in read mode.
+     *
+     * @return the next frame or null if the buffer does not hold a whole frame yet, in which case
+     * the buffer position is left untouched
+     * @throws ProtocolException if the header is malformed
+     */
+    public static Frame decode(ByteBuffer buffer) throws ProtocolException {
+        return decode(buffer, MAX_PAYLOAD_SIZE);
+    }
+
+    /**
+     * @param maxPayloadSize the largest payload accepted, a longer frame is treated as a malformed header
+     */
+    public static Frame decode(ByteBuffer buffer, int maxPayloadSize) throws ProtocolException {
+        if (buffer.remaining() < HEADER_SIZE) {
+            return null;
+        }
+        int start = buffer.position();
+        int payloadLength = getPayloadLength(buffer, start, maxPayloadSize);
+        FrameType type = FrameType.fromCode(buffer.get(start + Integer.BYTES));
+        if (buffer.remaining() < HEADER_SIZE + payloadLength) {
+            return null;
+        }
+        byte[] payload = new byte[payloadLength];
+        buffer.position(start + HEADER_SIZE);
+        buffer.get(payload);
+        return new Frame(type, payload);
+    }
+
+    /**
+     * Consumes one frame from a buffer in read mode without copying its payload.
+     *
+     * @return a slice of the buffer holding the payload of the next frame, or null if the buffer does not hold a
+     * whole frame yet, in which case the buffer position is left untouched
+     * @throws ProtocolException if the header is malformed or the frame is not of the expected type
+     */
+    public static ByteBuffer decodePayload(ByteBuffer buffer, FrameType expectedType) throws ProtocolException {
+        return decodePayload(buffer, expectedType, MAX_PAYLOAD_SIZE);
+    }
+
+    /**
+     * @param maxPayloadSize the largest payload accepted, a longer frame is treated as a malformed header
+     */
+    public static ByteBuffer decodePayload(ByteBuffer buffer, FrameType expectedType, int maxPayloadSize)
+        throws ProtocolException {
+        if (buffer.remaining() < HEADER_SIZE) {
+            return null;
+        }
+        int start = buffer.position();
+        int payloadLength = getPayloadLength(buffer, start, maxPayloadSize);
+        FrameType type = FrameType.fromCode(buffer.get(start + Integer.BYTES));
+        if (type != expectedType) {
+            throw new ProtocolException("Unexpected frame type " + type + ", expected " + expectedType);
+        }
+        if (buffer.remaining() < HEADER_SIZE + payloadLength) {
+            return null;
+        }
+        ByteBuffer payload = buffer.slice(start + HEADER_SIZE, payloadLength);
+        buffer.position(start + HEADER_SIZE + payloadLength);
+        return payload;
+    }
+
+    public static void writeFully(WritableByteChannel channel, Frame frame) throws IOException {
+        ByteBuffer buffer = encode(frame);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static int getPayloadLength(ByteBuffer buffer, int start, int maxPayloadSize) throws ProtocolException {
+        int payloadLength = buffer.getInt(start);
+        if (payloadLength < 0 || payloadLength > maxPayloadSize) {
+            throw new ProtocolException("Invalid frame length " + payloadLength);
+        }
+        return payloadLength;
+    }
+}
@@ -0,0 +1,104 @@
+package bg.sofia.uni.fmi.mjt.spotify.protocol;
+
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.function.Function;
+
+/**
+ * Accumulates the bytes read from a channel and splits them into frames. Consumed frames are not moved out of the
+ * buffer one by one: the unread bytes are moved to its start only when it is full, and the buffer is simply reset
+ * once every byte in it has been consumed.
+ */
+public class FrameReader {
+    private static final int INITIAL_CAPACITY = 1024;
+    private final int maxPayloadSize;
+    private ByteBuffer buffer;
+    private int readPosition;
+
+    public FrameReader() {
+        this(FrameCodec.MAX_PAYLOAD_SIZE);
+    }
+
+    /**
+     * @param maxPayloadSize the largest payload accepted, which also bounds how large the buffer can grow
+     */
+    public FrameReader(int maxPayloadSize) {
+        this.maxPayloadSize = maxPayloadSize;
+        this.buffer = ByteBuffer.allocate(Math.min(INITIAL_CAPACITY, FrameCodec.HEADER_SIZE + maxPayloadSize));
+    }
+
+    /**
+     * Appends whatever is available on the channel to the accumulated bytes.
+     *
+     * @return the number of bytes read or -1 if the channel has reached end-of-stream
+     */
+    public int readFrom(ReadableByteChannel channel) throws IOException {
+        if (!buffer.hasRemaining()) {
+            compact();
+        }
+        if (!buffer.hasRemaining()) {
+            grow();
+        }
+        return channel.read(buffer);
+    }
+
+    /**
+     * @return the next complete frame or null if more bytes are needed
+     */
+    public Frame nextFrame() throws ProtocolException {
+        ByteBuffer unread = unread();
+        Frame frame = FrameCodec.decode(unread, maxPayloadSize);
+        consumeUpTo(unread.position());
+        return frame;
+    }
+
+    /**
+     * Hands the payload of the next complete frame to the parser straight from the read buffer, without copying it.
+     * The payload is valid only until the parser returns.
+     *
+     * @return what the parser returned or null if more bytes are needed
+     * @throws ProtocolException if the header is malformed or the frame is not of the expected type
+     */
+    public <T> T nextFrame(FrameType expectedType, Function<ByteBuffer, T> payloadParser) throws ProtocolException {
+        ByteBuffer unread = unread();
+        ByteBuffer payload = FrameCodec.decodePayload(unread, expectedType, maxPayloadSize);
+        if (payload == null) {
+            return null;
+        }
+        try {
+            return payloadParser.apply(payload);
+        } finally {
+            consumeUpTo(unread.position());
+        }
+    }
+
+    private ByteBuffer unread() {
+        return buffer.duplicate().flip().position(readPosition);
+    }
+
+    private void consumeUpTo(int position) {
+        readPosition = position;
+        if (readPosition == buffer.position()) {
+            buffer.clear();
+            readPosition = 0;
+        }
+    }
+
+    private void compact() {
+        if (readPosition > 0) {
+            buffer.flip().position(readPosition);
+            buffer.compact();
+            readPosition = 0;
+        }
+    }
+
+    private void grow() {
+        int newCapacity = Math.min(buffer.capacity() * 2, FrameCodec.HEADER_SIZE + maxPayloadSize);
+        ByteBuffer newBuffer = ByteBuffer.allocate(newCapacity);
+        buffer.flip();
+        newBuffer.put(buffer);
+        buffer = newBuffer;
+    }
+}
@@ -0,0 +1,29 @@
+package bg.sofia.uni.fmi.mjt.spotify.protocol;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+public interface FrameSink {
+    /**
+     * Sends a whole frame to the other side of the connection
+     *
+     * @param frame the frame that should be sent
+     * @throws IOException if the frame cannot be written to the underlying channel
+     */
+    void send(Frame frame) throws IOException;
+
+    /**
+     * Sends a frame whose payload is taken from the buffer as it is, without copying it.
+     * The buffer must not be modified afterwards.
+     *
+     * @param type the type of the frame
+     * @param payload the payload of the frame, in read mode
+     * @throws IOException if the frame cannot be written to the underlying channel
+     */
+    void send(FrameType type, ByteBuffer payload) throws IOException;
+
+    /**
+     * @return true if the receiver is not keeping up and producers should hold off sending more frames
+     */
+    boolean isCongested();
+}
@@ -0,0 +1,36 @@
+package bg.sofia.uni.fmi.mjt.spotify.protocol;
+
+import java.net.ProtocolException;
+
+public enum FrameType {
+    COMMAND((byte) 1),
+    REPLY((byte) 2),
+    AUDIO_FORMAT((byte) 3),
+    AUDIO_CHUNK((byte) 4),
+    AUDIO_END((byte) 5);
+
+    private static final FrameType[] BY_CODE = new FrameType[AUDIO_END.code + 1];
+
+    static {
+        for (FrameType type : values()) {
+            BY_CODE[type.code] = type;
+        }
+    }
+
+    private final byte code;
+
+    FrameType(byte code) {
+        this.code = code;
+    }
+
+    public byte getCode() {
+        return code;
+    }
+
+    public static FrameType fromCode(byte code) throws ProtocolException {
+        if (code <= 0 || code >= BY_CODE.length) {
+            throw new ProtocolException("Unknown frame type " + code);
+        }
+        return BY_CODE[code];
+    }
+}
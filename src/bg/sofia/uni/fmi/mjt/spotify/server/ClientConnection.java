@@ -0,0 +1,204 @@
+package bg.sofia.uni.fmi.mjt.spotify.server;
+
+import bg.sofia.uni.fmi.mjt.spotify.command.Command;
+import bg.sofia.uni.fmi.mjt.spotify.command.CommandCreator;
+import bg.sofia.uni.fmi.mjt.spotify.protocol.Frame;
+import bg.sofia.uni.fmi.mjt.spotify.protocol.FrameCodec;
+import bg.sofia.uni.fmi.mjt.spotify.protocol.FrameReader;
+import bg.sofia.uni.fmi.mjt.spotify.protocol.FrameSink;
+import bg.sofia.uni.fmi.mjt.spotify.protocol.FrameType;
+
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Executor;
+
+/**
+ * Server side state of one client. Outgoing frames go through a queue that is drained when the socket is writable,
+ * so a slow reader never blocks the selector thread. Reading from the client is paused while more than
+ * {@link #HIGH_WATERMARK} bytes wait to be sent and resumed once the queue drops below {@link #LOW_WATERMARK}.
+ * Commands of one connection are executed one after another in arrival order, even when the executor behind them
+ * runs commands of different connections in parallel.
+ */
+public class ClientConnection implements FrameSink {
+    public static final int HIGH_WATERMARK = 1024 * 1024;
+    public static final int LOW_WATERMARK = 256 * 1024;
+    public static final int MAX_PENDING_COMMANDS = 64;
+
+    private final SelectionKey selectionKey;
+    private final SocketChannel channel;
+    private final FrameReader frameReader;
+    private final Deque<ByteBuffer> outboundQueue;
+    private final Deque<Runnable> pendingCommands;
+    private final Executor commandExecutor;
+    private long queuedBytes;
+    private boolean isReadingPaused;
+    private boolean isExecutingCommands;
+
+    public ClientConnection(SelectionKey selectionKey) {
+        this(selectionKey, Runnable::run);
+    }
+
+    public ClientConnection(SelectionKey selectionKey, Executor commandExecutor) {
+        this.selectionKey = selectionKey;
+        this.channel = (SocketChannel) selectionKey.channel();
+        this.frameReader = new FrameReader(FrameCodec.MAX_COMMAND_PAYLOAD_SIZE);
+        this.outboundQueue = new ArrayDeque<>();
+        this.pendingCommands = new ArrayDeque<>();
+        this.commandExecutor = commandExecutor;
+    }
+
+    public SocketChannel getChannel() {
+        return channel;
+    }
+
+    public int read() throws IOException {
+        return frameReader.readFrom(channel);
+    }
+
+    /**
+     * Parses the next command of the client straight from the read buffer.
+     *
+     * @return the next command or null if more bytes are needed
+     * @throws ProtocolException if the client sent something other than a command
+     */
+    public Command nextCommand() throws ProtocolException {
+        return frameReader.nextFrame(FrameType.COMMAND, CommandCreator::newCommand);
+    }
+
+    /**
+     * Schedules a command of this client. It runs after all previously submitted commands of the same client.
+     */
+    public void submit(Runnable command) {
+        synchronized (this) {
+            pendingCommands.addLast(command);
+            if (isExecutingCommands) {
+                updateInterest();
+                return;
+            }
+            isExecutingCommands = true;
+        }
+        commandExecutor.execute(this::runPendingCommands);
+    }
+
+    @Override
+    public void send(Frame frame) throws IOException {
+        enqueue(FrameCodec.encode(frame));
+    }
+
+    @Override
+    public void send(FrameType type, ByteBuffer payload) throws IOException {
+        enqueue(FrameCodec.encodeHeader(type, payload.remaining()), payload);
+    }
+
+    /**
+     * Queues already encoded bytes, writing as much as possible right away when nothing else is waiting.
+     */
+    public synchronized void enqueue(ByteBuffer... buffers) throws IOException {
+        if (!selectionKey.isValid()) {
+            throw new ClosedChannelException();
+        }
+        for (ByteBuffer buffer : buffers) {
+            outboundQueue.addLast(buffer);
+            queuedBytes += buffer.remaining();
+        }
+        if (outboundQueue.size() == buffers.length) {
+            flush();
+        }
+        if (!outboundQueue.isEmpty()) {
+            updateInterest();
+        }
+    }
+
+    /**
+     * Writes queued bytes until the queue is empty or the socket send buffer is full.
+     * Called by the selector thread when the key is writable.
+     */
+    public synchronized void flush() throws IOException {
+        while (!outboundQueue.isEmpty()) {
+            ByteBuffer head = outboundQueue.peekFirst();
+            queuedBytes -= channel.write(head);
+            if (head.hasRemaining()) {
+                break;
+            }
+            outboundQueue.pollFirst();
+        }
+        updateInterest();
+    }
+
+    @Override
+    public synchronized boolean isCongested() {
+        return queuedBytes >= HIGH_WATERMARK;
+    }
+
+    public synchronized long getQueuedBytes() {
+        return queuedBytes;
+    }
+
+    private void runPendingCommands() {
+        while (true) {
+            Runnable command;
+            synchronized (this) {
+                command = pendingCommands.pollFirst();
+                if (command == null) {
+                    isExecutingCommands = false;
+                    updateInterest();
+                    return;
+                }
+            }
+            try {
+                command.run();
+            } catch (RuntimeException e) {
+                System.out.println("Unable to execute a command of the client: " + e.getMessage());
+            } catch (Error e) {
+                scheduleRemainingCommands();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Hands the commands left behind by a failed drain to a new one, so they are not stuck behind the failure.
+     */
+    private void scheduleRemainingCommands() {
+        synchronized (this) {
+            if (pendingCommands.isEmpty()) {
+                isExecutingCommands = false;
+                updateInterest();
+                return;
+            }
+        }
+        commandExecutor.execute(this::runPendingCommands);
+    }
+
+    private void updateInterest() {
+        if (queuedBytes >= HIGH_WATERMARK || pendingCommands.size() >= MAX_PENDING_COMMANDS) {
+            isReadingPaused = true;
+        } else if (queuedBytes <= LOW_WATERMARK && pendingCommands.size() < MAX_PENDING_COMMANDS) {
+            isReadingPaused = false;
+        }
+
+        int interestOps = 0;
+        if (!isReadingPaused) {
+            interestOps |= SelectionKey.OP_READ;
+        }
+        if (!outboundQueue.isEmpty()) {
+            interestOps |= SelectionKey.OP_WRITE;
+        }
+        try {
+            if (selectionKey.interestOps() != interestOps) {
+                selectionKey.interestOps(interestOps);
+                selectionKey.selector().wakeup();
+            }
+        } catch (CancelledKeyException e) {
+            outboundQueue.clear();
+            queuedBytes = 0;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package bg.sofia.uni.fmi.mjt.spotify.server;
+
+import bg.sofia.uni.fmi.mjt.spotify.command.Command;
+import bg.sofia.uni.fmi.mjt.spotify.command.CommandExecutor;
+import bg.sofia.uni.fmi.mjt.spotify.metrics.LatencyHistogram;
+import bg.sofia.uni.fmi.mjt.spotify.metrics.MetricsRegistry;
+import bg.sofia.uni.fmi.mjt.spotify.protocol.Frame;
+import bg.sofia.uni.fmi.mjt.spotify.protocol.FrameType;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs the read/execute/write loop for the connections handed to it by the acceptor. Every reactor has its own
+ * selector and thread, so the connections of one reactor are never touched by another. Commands are executed
+ * by the given command executor and their replies are queued back on the connection of the client.
+ */
+public class Reactor implements Runnable {
+    private final Selector selector;
+    private final CommandExecutor executor;
+    private final Executor commandExecutor;
+    private final Queue<SocketChannel> pendingChannels;
+    private final LatencyHistogram iterationLatency;
+    private final LongAdder closedConnections;
+    private volatile boolean isRunning;
+
+    public Reactor(CommandExecutor executor) throws IOException {
+        this(executor, Runnable::run);
+    }
+
+    public Reactor(CommandExecutor executor, Executor commandExecutor) throws IOException {
+        this.selector = Selector.open();
+        this.executor = executor;
+        this.commandExecutor = commandExecutor;
+        this.pendingChannels = new ConcurrentLinkedQueue<>();
+        this.iterationLatency = MetricsRegistry.getDefault().histogram("reactor.iteration");
+        this.closedConnections = MetricsRegistry.getDefault().counter("connections.closed");
+        this.isRunning = true;
+    }
+
+    /**
+     * Hands an accepted channel over to this reactor. Safe to call from any thread.
+     */
+    public void register(SocketChannel clientChannel) {
+        pendingChannels.offer(clientChannel);
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (isRunning) {
+                selector.select();
+                long iterationStartNanos = System.nanoTime();
+                registerPendingChannels();
+                Iterator<SelectionKey> keyIterator = selector.selectedKeys().iterator();
+                while (keyIterator.hasNext()) {
+                    SelectionKey key = keyIterator.next();
+                    keyIterator.remove();
+                    if (key.isValid() && key.isWritable()) {
+                        handleClientOutput(key);
+                    }
+                    if (key.isValid() && key.isReadable()) {
+                        handleClientInput(key);
+                    }
+                }
+                iterationLatency.record(System.nanoTime() - iterationStartNanos);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("There is a problem with the reactor selector", e);
+        } finally {
+            closeSelector();
+        }
+    }
+
+    public void stop() {
+        isRunning = false;
+        selector.wakeup();
+    }
+
+    private void registerPendingChannels() {
+        SocketChannel clientChannel;
+        while ((clientChannel = pendingChannels.poll()) != null) {
+            try {
+                clientChannel.configureBlocking(false);
+                SelectionKey clientKey = clientChannel.register(selector, SelectionKey.OP_READ);
+                clientKey.attach(new ClientConnection(clientKey, commandExecutor));
+            } catch (IOException e) {
+                System.out.println("Unable to register client connection: " + e.getMessage());
+                closeChannel(clientChannel);
+            }
+        }
+    }
+
+    private void handleClientInput(SelectionKey key) {
+        ClientConnection connection = (ClientConnection) key.attachment();
+        try {
+            if (connection.read() < 0) {
+                System.out.println("Client has closed the connection");
+                closeConnection(key);
+                return;
+            }
+            Command command;
+            while ((command = connection.nextCommand()) != null) {
+                Command nextCommand = command;
+                connection.submit(() -> executeCommand(key, connection, nextCommand));
+            }
+        } catch (IOException e) {
+            System.out.println("Closing client connection because of a problem with it: " + e.getMessage());
+            closeConnection(key);
+        }
+    }
+
+    private void executeCommand(SelectionKey key, ClientConnection connection, Command command) {
+        String output = executor.execute(command, key);
+        try {
+            connection.send(Frame.of(FrameType.REPLY, output));
+        } catch (IOException e) {
+            System.out.println("Unable to send reply to client: " + e.getMessage());
+            closeConnection(key);
+        }
+    }
+
+    private void handleClientOutput(SelectionKey key) {
+        ClientConnection connection = (ClientConnection) key.attachment();
+        try {
+            connection.flush();
+        } catch (IOException e) {
+            System.out.println("Closing client connection because of a problem with it: " + e.getMessage());
+            closeConnection(key);
+        }
+    }
+
+    private void closeConnection(SelectionKey key) {
+        if (key.isValid()) {
+            closedConnections.increment();
+        }
+        key.cancel();
+        closeChannel((SocketChannel) key.channel());
+        executor.connectionClosed(key);
+    }
+
+    private void closeChannel(SocketChannel clientChannel) {
+        try {
+            clientChannel.close();
+        } catch (IOException e) {
+            System.out.println("Unable to close client connection: " + e.getMessage());
+        }
+    }
+
+    private void closeSelector() {
+        for (SelectionKey key : selector.keys()) {
+            closeChannel((SocketChannel) key.channel());
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            System.out.println("Unable to close reactor selector: " + e.getMessage());
+        }
+    }
+}
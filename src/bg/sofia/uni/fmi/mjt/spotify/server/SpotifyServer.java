@@ -1,45 +1,86 @@
 package bg.sofia.uni.fmi.mjt.spotify.server;
 
 import bg.sofia.uni.fmi.mjt.spotify.Spotify;
-import bg.sofia.uni.fmi.mjt.spotify.command.CommandCreator;
 import bg.sofia.uni.fmi.mjt.spotify.command.CommandExecutor;
+import bg.sofia.uni.fmi.mjt.spotify.exception.ExceptionHandler;
+import bg.sofia.uni.fmi.mjt.spotify.metrics.MetricsFileWriter;
+import bg.sofia.uni.fmi.mjt.spotify.metrics.MetricsRegistry;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.net.InetSocketAddress;
-import java.nio.ByteBuffer;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
-import java.nio.charset.StandardCharsets;
 import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
 
 public class SpotifyServer {
-    private static final int BUFFER_SIZE = 1024;
     private static final String SERVER_HOST = "localhost";
-    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private static final String REACTOR_THREAD_NAME = "spotify-reactor-";
     private Selector selector;
-    private boolean isServerRunning;
+    private volatile boolean isServerRunning;
     private final int serverPort;
+    private final int reactorsCount;
     private final CommandExecutor executor;
+    private final ExecutorService commandExecutorService;
+    private final LongAdder acceptedConnections;
+    private Reactor[] reactors;
+    private int nextReactorIndex;
 
     public SpotifyServer(int serverPort, CommandExecutor commandExecutor) {
+        this(serverPort, commandExecutor, Runtime.getRuntime().availableProcessors());
+    }
+
+    public SpotifyServer(int serverPort, CommandExecutor commandExecutor, int reactorsCount) {
+        this(serverPort, commandExecutor, reactorsCount, null);
+    }
+
+    /**
+     * @param commandExecutorService where commands are executed, or null to execute them on the reactor threads
+     */
+    public SpotifyServer(int serverPort, CommandExecutor commandExecutor, int reactorsCount,
+                         ExecutorService commandExecutorService) {
+        if (reactorsCount <= 0) {
+            throw new IllegalArgumentException("The server needs at least one reactor but was " + reactorsCount);
+        }
         this.serverPort = serverPort;
         this.executor = commandExecutor;
+        this.reactorsCount = reactorsCount;
+        this.commandExecutorService = commandExecutorService;
+        this.acceptedConnections = MetricsRegistry.getDefault().counter("connections.accepted");
     }
 
     public static void main(String[] args) {
         final int port = 7777;
-        CommandExecutor commandExecutor = new CommandExecutor(new Spotify());
-        SpotifyServer server = new SpotifyServer(port, commandExecutor);
-        server.start();
+        Spotify spotify = new Spotify();
+        ExceptionHandler exceptionHandler = new ExceptionHandler();
+        MetricsRegistry metrics = MetricsRegistry.getDefault();
+        spotify.registerGauges(metrics);
+        metrics.gauge("errors.written", exceptionHandler::getWrittenCount);
+        metrics.gauge("errors.dropped", exceptionHandler::getDroppedCount);
+        MetricsFileWriter metricsFileWriter = new MetricsFileWriter(metrics);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            spotify.close();
+            exceptionHandler.close();
+            metricsFileWriter.close();
+        }));
+        CommandExecutor commandExecutor = new CommandExecutor(spotify, exceptionHandler);
+        try (ExecutorService commandExecutorService = Executors.newVirtualThreadPerTaskExecutor()) {
+            SpotifyServer server = new SpotifyServer(port, commandExecutor,
+                Runtime.getRuntime().availableProcessors(), commandExecutorService);
+            server.start();
+        }
     }
 
     public void start() {
         try (ServerSocketChannel serverSocketChannel = ServerSocketChannel.open()) {
             selector = Selector.open();
             configureServerSocketChannel(serverSocketChannel);
+            startReactors();
             isServerRunning = true;
             while (isServerRunning) {
                 int readyChannels = selector.select();
@@ -49,27 +90,22 @@ public class SpotifyServer {
                 Iterator<SelectionKey> keyIterator = selector.selectedKeys().iterator();
                 while (keyIterator.hasNext()) {
                     SelectionKey key = keyIterator.next();
-                    if (key.isReadable()) {
-                        SocketChannel clientChannel = (SocketChannel) key.channel();
-                        String clientInput = getClientInput(clientChannel);
-                        if (clientInput == null) {
-                            continue;
-                        }
-                        writeClientOutput(clientChannel, executor.execute(CommandCreator.newCommand(clientInput), key));
-                    } else if (key.isAcceptable()) {
-                        acceptNewConnection(selector, key);
-                    }
                     keyIterator.remove();
+                    if (key.isValid() && key.isAcceptable()) {
+                        acceptNewConnection(key);
+                    }
                 }
             }
         } catch (IOException e) {
             throw new UncheckedIOException("There is a problem with the server socket", e);
+        } finally {
+            stopReactors();
         }
     }
 
     public void stop() {
         isServerRunning = false;
-        if (selector.isOpen()) {
+        if (selector != null && selector.isOpen()) {
             selector.wakeup();
         }
     }
@@ -80,35 +116,36 @@ public class SpotifyServer {
         serverSocketChannel.register(selector, SelectionKey.OP_ACCEPT);
     }
 
-    private String getClientInput(SocketChannel clientChannel) throws IOException {
-        buffer.clear();
-        int readBytes = clientChannel.read(buffer);
-        if (readBytes < 0) {
-            System.out.println("Client has closed the connection");
-            clientChannel.close();
-            return null;
+    private void startReactors() throws IOException {
+        reactors = new Reactor[reactorsCount];
+        for (int i = 0; i < reactorsCount; i++) {
+            reactors[i] = commandExecutorService == null ? new Reactor(executor)
+                : new Reactor(executor, commandExecutorService);
+            Thread reactorThread = new Thread(reactors[i], REACTOR_THREAD_NAME + i);
+            reactorThread.start();
         }
-
-        buffer.flip();
-
-        byte[] clientInputBytes = new byte[buffer.remaining()];
-        buffer.get(clientInputBytes);
-        return new String(clientInputBytes, StandardCharsets.UTF_8);
     }
 
-    private void writeClientOutput(SocketChannel clientChannel, String output) throws IOException {
-        buffer.clear();
-        buffer.put(output.getBytes());
-        buffer.flip();
-
-        clientChannel.write(buffer);
+    private void stopReactors() {
+        if (reactors == null) {
+            return;
+        }
+        for (Reactor reactor : reactors) {
+            if (reactor != null) {
+                reactor.stop();
+            }
+        }
     }
 
-    private void acceptNewConnection(Selector selector, SelectionKey selectionKey) throws IOException {
+    private void acceptNewConnection(SelectionKey selectionKey) throws IOException {
         ServerSocketChannel socketChannel = (ServerSocketChannel) selectionKey.channel();
         SocketChannel accept = socketChannel.accept();
+        if (accept == null) {
+            return;
+        }
 
-        accept.configureBlocking(false);
-        accept.register(selector, SelectionKey.OP_READ);
+        acceptedConnections.increment();
+        reactors[nextReactorIndex].register(accept);
+        nextReactorIndex = (nextReactorIndex + 1) % reactorsCount;
     }
 }
@@ -0,0 +1,67 @@
+package bg.sofia.uni.fmi.mjt.spotify.session;
+
+import java.nio.channels.SelectionKey;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A logged in user. The session outlives its connection for a while, so that a client that reconnects can resume it
+ * with its token instead of logging in again.
+ */
+public class Session {
+    private final String token;
+    private final String userEmail;
+    private final long createdMillis;
+    private final AtomicLong commandsCount;
+    private volatile long lastActivityMillis;
+    private volatile SelectionKey connection;
+
+    Session(String token, String userEmail, SelectionKey connection) {
+        this.token = token;
+        this.userEmail = userEmail;
+        this.connection = connection;
+        this.createdMillis = System.currentTimeMillis();
+        this.lastActivityMillis = createdMillis;
+        this.commandsCount = new AtomicLong();
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    public String getUserEmail() {
+        return userEmail;
+    }
+
+    public long getCreatedMillis() {
+        return createdMillis;
+    }
+
+    public long getLastActivityMillis() {
+        return lastActivityMillis;
+    }
+
+    public long getCommandsCount() {
+        return commandsCount.get();
+    }
+
+    public void recordCommand() {
+        commandsCount.incrementAndGet();
+        lastActivityMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * @return the connection of the session, or null while the client is disconnected
+     */
+    public SelectionKey getConnection() {
+        return connection;
+    }
+
+    void setConnection(SelectionKey connection) {
+        this.connection = connection;
+        lastActivityMillis = System.currentTimeMillis();
+    }
+
+    boolean isExpired(long nowMillis, long resumeTimeoutMillis) {
+        return connection == null && nowMillis - lastActivityMillis > resumeTimeoutMillis;
+    }
+}
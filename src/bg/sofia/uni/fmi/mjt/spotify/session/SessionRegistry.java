@@ -0,0 +1,139 @@
+package bg.sofia.uni.fmi.mjt.spotify.session;
+
+import java.nio.channels.SelectionKey;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The sessions of the logged in users, found in constant time both by their connection and by their token. Safe to
+ * use from the selector threads and from the threads that execute commands.
+ *
+ * <p>When a connection is lost its session is only detached. It can be resumed with its token from a new connection
+ * until it has been detached for longer than the resume timeout. Logging out forgets the session at once.</p>
+ */
+public class SessionRegistry {
+    public static final long DEFAULT_RESUME_TIMEOUT_MILLIS = 30 * 60 * 1000;
+    private static final int TOKEN_BYTES = 24;
+    private static final long EXPIRATION_CHECK_INTERVAL_MILLIS = 60 * 1000;
+
+    private final long resumeTimeoutMillis;
+    private final Map<SelectionKey, Session> sessionsByConnection;
+    private final Map<String, Session> sessionsByToken;
+    private final SecureRandom random;
+    private final AtomicLong lastExpirationCheckMillis;
+
+    public SessionRegistry() {
+        this(DEFAULT_RESUME_TIMEOUT_MILLIS);
+    }
+
+    public SessionRegistry(long resumeTimeoutMillis) {
+        this.resumeTimeoutMillis = resumeTimeoutMillis;
+        this.sessionsByConnection = new ConcurrentHashMap<>();
+        this.sessionsByToken = new ConcurrentHashMap<>();
+        this.random = new SecureRandom();
+        this.lastExpirationCheckMillis = new AtomicLong(System.currentTimeMillis());
+    }
+
+    /**
+     * Starts a session for the user on the connection, or returns the session the connection already has.
+     */
+    public Session open(SelectionKey connection, String userEmail) {
+        removeExpiredIfDue();
+        Session session = new Session(newToken(), userEmail, connection);
+        Session existing = sessionsByConnection.putIfAbsent(connection, session);
+        if (existing != null) {
+            return existing;
+        }
+        sessionsByToken.put(session.getToken(), session);
+        return session;
+    }
+
+    /**
+     * @return the session of the connection, or null if it is not logged in
+     */
+    public Session get(SelectionKey connection) {
+        return sessionsByConnection.get(connection);
+    }
+
+    /**
+     * Moves the session with the token to the connection. A connection that still holds the session loses it.
+     *
+     * @return the resumed session, or null if the token is unknown or expired or the connection already has a session
+     */
+    public Session resume(String token, SelectionKey connection) {
+        Session session = sessionsByToken.get(token);
+        if (session == null) {
+            return null;
+        }
+        if (session.isExpired(System.currentTimeMillis(), resumeTimeoutMillis)) {
+            sessionsByToken.remove(token, session);
+            return null;
+        }
+        if (sessionsByConnection.putIfAbsent(connection, session) != null) {
+            return null;
+        }
+        SelectionKey previous;
+        synchronized (session) {
+            previous = session.getConnection();
+            session.setConnection(connection);
+        }
+        if (previous != null && previous != connection) {
+            sessionsByConnection.remove(previous, session);
+        }
+        return session;
+    }
+
+    /**
+     * Called when the connection is lost. Its session stays resumable.
+     */
+    public void detach(SelectionKey connection) {
+        Session session = sessionsByConnection.remove(connection);
+        if (session == null) {
+            return;
+        }
+        synchronized (session) {
+            if (session.getConnection() == connection) {
+                session.setConnection(null);
+            }
+        }
+    }
+
+    /**
+     * Logs the connection out and forgets its session.
+     */
+    public void close(SelectionKey connection) {
+        Session session = sessionsByConnection.remove(connection);
+        if (session != null) {
+            sessionsByToken.remove(session.getToken(), session);
+        }
+    }
+
+    public int getSessionsCount() {
+        return sessionsByToken.size();
+    }
+
+    public int getConnectedSessionsCount() {
+        return sessionsByConnection.size();
+    }
+
+    private String newToken() {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    private void removeExpiredIfDue() {
+        long now = System.currentTimeMillis();
+        long lastCheck = lastExpirationCheckMillis.get();
+        if (now - lastCheck < EXPIRATION_CHECK_INTERVAL_MILLIS) {
+            return;
+        }
+        if (!lastExpirationCheckMillis.compareAndSet(lastCheck, now)) {
+            return;
+        }
+        sessionsByToken.values().removeIf(session -> session.isExpired(now, resumeTimeoutMillis));
+    }
+}
@@ -0,0 +1,107 @@
+package bg.sofia.uni.fmi.mjt.spotify.song;
+
+import bg.sofia.uni.fmi.mjt.spotify.storage.StorageEngine;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps the playlists in the embedded storage engine. Every playlist is a key whose value is the number of pages of
+ * its songs, and every page of up to {@link #PAGE_SIZE} songs is the value of a key of its own. The storage engine
+ * keeps only keys in memory, so a playlist that is not read stays on disk, and adding a song rewrites only the last
+ * page of the playlist.
+ */
+public class EmbeddedPlaylistStorage implements PlaylistStorage {
+    public static final int PAGE_SIZE = 64;
+    private static final String PLAYLIST_PREFIX = "playlist/";
+    private static final String PLAYLIST_PAGE_PREFIX = "playlist-page/";
+    private static final String KEY_SEPARATOR = "\u0000";
+    private static final String FIELD_SEPARATOR = "\u0000";
+    private static final String SONG_SEPARATOR = "\n";
+
+    private final StorageEngine storageEngine;
+
+    public EmbeddedPlaylistStorage(StorageEngine storageEngine) {
+        this.storageEngine = storageEngine;
+    }
+
+    @Override
+    public Set<String> readPlaylistNames() {
+        Set<String> playlistNames = new HashSet<>();
+        storageEngine.keys(PLAYLIST_PREFIX)
+            .forEach(key -> playlistNames.add(key.substring(PLAYLIST_PREFIX.length())));
+        return playlistNames;
+    }
+
+    @Override
+    public Playlist readPlaylist(String playlistName) {
+        Set<Song> songs = new HashSet<>();
+        int pagesCount = readPagesCount(playlistName);
+        for (int page = 0; page < pagesCount; page++) {
+            for (String songEntry : storageEngine.get(pageKey(playlistName, page)).split(SONG_SEPARATOR)) {
+                String[] fields = songEntry.split(FIELD_SEPARATOR);
+                songs.add(new Song(fields[0], fields[1], 0));
+            }
+        }
+        Playlist playlist = new Playlist(playlistName);
+        playlist.setSongs(songs);
+        return playlist;
+    }
+
+    @Override
+    public void createPlaylist(String playlistName) {
+        storageEngine.put(PLAYLIST_PREFIX + playlistName, String.valueOf(0));
+    }
+
+    /**
+     * Appends the song to the last page of the playlist, or starts a new page when the last one is full. The adds to
+     * one playlist must not run concurrently, which the playlist cache guarantees.
+     */
+    @Override
+    public void addSong(String playlistName, Song song) {
+        int pagesCount = readPagesCount(playlistName);
+        String lastPage = pagesCount == 0 ? null : storageEngine.get(pageKey(playlistName, pagesCount - 1));
+        if (lastPage == null || lastPage.split(SONG_SEPARATOR).length >= PAGE_SIZE) {
+            storageEngine.putAll(Map.of(
+                pageKey(playlistName, pagesCount), songEntry(song),
+                PLAYLIST_PREFIX + playlistName, String.valueOf(pagesCount + 1)));
+        } else {
+            storageEngine.put(pageKey(playlistName, pagesCount - 1), lastPage + SONG_SEPARATOR + songEntry(song));
+        }
+    }
+
+    /**
+     * Copies all the playlists of the source with a single disk sync.
+     */
+    public void importFrom(PlaylistStorage source) {
+        Map<String, String> entries = new HashMap<>();
+        for (String playlistName : source.readPlaylistNames()) {
+            List<String> songEntries = new ArrayList<>();
+            source.readPlaylist(playlistName).getSongs().forEach(song -> songEntries.add(songEntry(song)));
+            int pagesCount = 0;
+            for (int from = 0; from < songEntries.size(); from += PAGE_SIZE) {
+                List<String> page = songEntries.subList(from, Math.min(from + PAGE_SIZE, songEntries.size()));
+                entries.put(pageKey(playlistName, pagesCount++), String.join(SONG_SEPARATOR, page));
+            }
+            entries.put(PLAYLIST_PREFIX + playlistName, String.valueOf(pagesCount));
+        }
+        storageEngine.putAll(entries);
+    }
+
+    private int readPagesCount(String playlistName) {
+        String pagesCount = storageEngine.get(PLAYLIST_PREFIX + playlistName);
+        return pagesCount == null || pagesCount.isEmpty() ? 0 : Integer.parseInt(pagesCount);
+    }
+
+    private static String pageKey(String playlistName, int page) {
+        return PLAYLIST_PAGE_PREFIX + playlistName + KEY_SEPARATOR + page;
+    }
+
+    private static String songEntry(Song song) {
+        return song.getName() + FIELD_SEPARATOR + song.getSingerName();
+    }
+}
@@ -0,0 +1,4 @@
+package bg.sofia.uni.fmi.mjt.spotify.song;
+
+public record PlayEvent(String songName, String singerName, String user, long timestamp) {
+}
@@ -0,0 +1,484 @@
+package bg.sofia.uni.fmi.mjt.spotify.song;
+
+import bg.sofia.uni.fmi.mjt.spotify.metrics.LatencyHistogram;
+import bg.sofia.uni.fmi.mjt.spotify.metrics.MetricsRegistry;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of every play. Plays are written by a single writer thread in batches, one write and one
+ * {@code force} per batch, so many concurrent plays share the cost of a disk sync. The log is split into numbered
+ * segments. Compaction closes the current segment, writes the play counts folded from all written events into the
+ * songs snapshot together with the number of the last folded segment, and archives the folded segments. On start the
+ * segments newer than the snapshot are replayed on top of it.
+ *
+ * <p>Every record is {@code [int length][int crc32][long timestamp][song name][singer name][user]}, where the
+ * strings are written as {@code [short length][UTF-8 bytes]}. A torn record at the end of a segment is cut off. A
+ * batch that fails to be written is cut off right away, or the log moves on to a new segment if that fails too, so the
+ * batches written after it are never hidden behind a torn record.</p>
+ */
+public class PlayEventLog implements AutoCloseable {
+    public static final String COMPACTED_SEGMENT_HEADER = "#compacted-segment ";
+    public static final long DEFAULT_COMPACTION_INTERVAL_MILLIS = 60_000;
+    public static final long DEFAULT_MAX_SEGMENT_BYTES = 16L * 1024 * 1024;
+    private static final String SEGMENT_PREFIX = "play-events-";
+    private static final String SEGMENT_EXTENSION = ".log";
+    private static final String COMPACTED_EXTENSION = ".compacted";
+    private static final String TEMP_FILE_EXTENSION = ".tmp";
+    private static final String SPACE = " ";
+    private static final int RECORD_HEADER_SIZE = Integer.BYTES * 2;
+    private static final int MAX_BATCH_SIZE = 1024;
+    private static final long POLL_MILLIS = 100;
+
+    private final Path directory;
+    private final Path songsFile;
+    private final long compactionIntervalMillis;
+    private final long maxSegmentBytes;
+    private final Map<Song, Song> songs;
+    private final Map<Song, Long> durableCounts;
+    private final SegmentOpener segmentOpener;
+    private final BlockingQueue<PendingPlay> pendingPlays;
+    private final BlockingQueue<CompletableFuture<Void>> compactionRequests;
+    private final Thread writerThread;
+    private final LatencyHistogram commitLatency;
+    private final LatencyHistogram compactionLatency;
+    private final LongAdder writtenEvents;
+    private volatile boolean isRunning;
+    private FileChannel segmentChannel;
+    private long segmentNumber;
+    private long lastCompactionMillis;
+
+    public PlayEventLog(Path directory, Path songsFile, Collection<Song> songs) {
+        this(directory, songsFile, songs, DEFAULT_COMPACTION_INTERVAL_MILLIS, DEFAULT_MAX_SEGMENT_BYTES);
+    }
+
+    /**
+     * Replays the segments that are not yet in the songs snapshot on top of the given songs and starts the writer.
+     *
+     * @param songs the songs read from the snapshot; their playing times are increased by the replayed plays
+     */
+    public PlayEventLog(Path directory, Path songsFile, Collection<Song> songs, long compactionIntervalMillis,
+                        long maxSegmentBytes) {
+        this(directory, songsFile, songs, compactionIntervalMillis, maxSegmentBytes,
+            segment -> FileChannel.open(segment, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND));
+    }
+
+    PlayEventLog(Path directory, Path songsFile, Collection<Song> songs, long compactionIntervalMillis,
+                 long maxSegmentBytes, SegmentOpener segmentOpener) {
+        this.directory = directory;
+        this.segmentOpener = segmentOpener;
+        this.songsFile = songsFile;
+        this.compactionIntervalMillis = compactionIntervalMillis;
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.songs = new HashMap<>();
+        songs.forEach(song -> this.songs.put(song, song));
+        this.durableCounts = new HashMap<>();
+        this.pendingPlays = new LinkedBlockingQueue<>();
+        this.compactionRequests = new LinkedBlockingQueue<>();
+        MetricsRegistry metrics = MetricsRegistry.getDefault();
+        this.commitLatency = metrics.histogram("play-events.commit");
+        this.compactionLatency = metrics.histogram("play-events.compaction");
+        this.writtenEvents = metrics.counter("play-events.written");
+
+        try {
+            Files.createDirectories(directory);
+            segmentNumber = recover(readCompactedSegment(songsFile)) + 1;
+            songs.forEach(song -> durableCounts.put(song, song.getPlayingTimes()));
+            openSegment();
+        } catch (IOException e) {
+            throw new UncheckedIOException("A problem occurred while recovering the play event log", e);
+        }
+        lastCompactionMillis = System.currentTimeMillis();
+        isRunning = true;
+        writerThread = new Thread(this::writeLoop, "spotify-play-event-log");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Queues a play to be written with the next batch. A play that loses a race with {@link #close()} and is not
+     * written by the writer thread anymore gets a future completed exceptionally, so no caller waits forever.
+     *
+     * @return a future completed once the play is durable on disk
+     */
+    public CompletableFuture<Void> append(Song song, String user) {
+        if (!isRunning) {
+            throw new IllegalStateException("The play event log is closed");
+        }
+        PendingPlay pendingPlay = new PendingPlay(song, new PlayEvent(song.getName(), song.getSingerName(),
+            user, System.currentTimeMillis()), new CompletableFuture<>());
+        pendingPlays.offer(pendingPlay);
+        if (!isRunning && pendingPlays.remove(pendingPlay)) {
+            pendingPlay.written().completeExceptionally(new IllegalStateException("The play event log is closed"));
+        }
+        return pendingPlay.written();
+    }
+
+    /**
+     * Asks the writer thread to fold everything written so far into the songs snapshot.
+     *
+     * @return a future completed once the snapshot is replaced
+     */
+    public CompletableFuture<Void> compact() {
+        CompletableFuture<Void> compacted = new CompletableFuture<>();
+        compactionRequests.offer(compacted);
+        if (!isRunning && compactionRequests.remove(compacted)) {
+            compacted.completeExceptionally(new IllegalStateException("The play event log is closed"));
+        }
+        return compacted;
+    }
+
+    public void registerGauges(MetricsRegistry metrics) {
+        metrics.gauge("play-events.pending", pendingPlays::size);
+    }
+
+    /**
+     * Reads all complete records of one segment, for example to rebuild the charts of a period.
+     *
+     * @return the position right after the last complete record
+     */
+    public static long readEvents(Path segment, Consumer<PlayEvent> consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    break;
+                }
+            }
+            buffer.flip();
+            long validPosition = 0;
+            while (buffer.remaining() >= RECORD_HEADER_SIZE) {
+                int length = buffer.getInt(buffer.position());
+                int crc = buffer.getInt(buffer.position() + Integer.BYTES);
+                if (length <= 0 || buffer.remaining() - RECORD_HEADER_SIZE < length) {
+                    break;
+                }
+                ByteBuffer body = buffer.slice(buffer.position() + RECORD_HEADER_SIZE, length);
+                if (crc(body) != crc) {
+                    break;
+                }
+                consumer.accept(decode(body));
+                buffer.position(buffer.position() + RECORD_HEADER_SIZE + length);
+                validPosition = buffer.position();
+            }
+            return validPosition;
+        }
+    }
+
+    @Override
+    public void close() {
+        if (!isRunning) {
+            return;
+        }
+        isRunning = false;
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        IllegalStateException closed = new IllegalStateException("The play event log is closed");
+        PendingPlay pendingPlay;
+        while ((pendingPlay = pendingPlays.poll()) != null) {
+            pendingPlay.written().completeExceptionally(closed);
+        }
+        CompletableFuture<Void> compactionRequest;
+        while ((compactionRequest = compactionRequests.poll()) != null) {
+            compactionRequest.completeExceptionally(closed);
+        }
+    }
+
+    private void writeLoop() {
+        List<PendingPlay> batch = new ArrayList<>(MAX_BATCH_SIZE);
+        while (isRunning || !pendingPlays.isEmpty()) {
+            try {
+                PendingPlay first = pendingPlays.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    pendingPlays.drainTo(batch, MAX_BATCH_SIZE - 1);
+                    writeBatch(batch);
+                    batch.clear();
+                }
+                if (shouldCompact()) {
+                    compactSegments();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        compactSegments();
+        closeSegment();
+    }
+
+    private void writeBatch(List<PendingPlay> batch) {
+        long startNanos = System.nanoTime();
+        long start = -1;
+        try {
+            start = segmentChannel.size();
+            List<ByteBuffer> records = new ArrayList<>(batch.size());
+            int size = 0;
+            for (PendingPlay pendingPlay : batch) {
+                ByteBuffer record = encode(pendingPlay.event());
+                records.add(record);
+                size += record.remaining();
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(size);
+            records.forEach(buffer::put);
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                segmentChannel.write(buffer);
+            }
+            segmentChannel.force(false);
+            commitLatency.record(System.nanoTime() - startNanos);
+            writtenEvents.add(batch.size());
+            for (PendingPlay pendingPlay : batch) {
+                durableCounts.merge(pendingPlay.song(), 1L, Long::sum);
+                pendingPlay.written().complete(null);
+            }
+        } catch (IOException e) {
+            System.out.println("Unable to write play events: " + e.getMessage());
+            batch.forEach(pendingPlay -> pendingPlay.written().completeExceptionally(e));
+            cutOffFailedBatch(start);
+        }
+    }
+
+    /**
+     * Cuts the bytes of a failed batch off the segment. If that fails too, the segment is left as it is and the next
+     * batches go to a new segment, since the replay of a segment stops at its first torn record.
+     */
+    private void cutOffFailedBatch(long start) {
+        try {
+            if (start < 0) {
+                throw new IOException("The size of the segment is unknown");
+            }
+            segmentChannel.truncate(start);
+        } catch (IOException e) {
+            System.out.println("Unable to cut off failed play events, starting a new segment: " + e.getMessage());
+            closeSegment();
+            segmentNumber++;
+            reopenAfterFailure();
+        }
+    }
+
+    private boolean shouldCompact() {
+        if (!compactionRequests.isEmpty()) {
+            return true;
+        }
+        try {
+            long segmentSize = segmentChannel.size();
+            boolean isIntervalOver = System.currentTimeMillis() - lastCompactionMillis >= compactionIntervalMillis;
+            return (isIntervalOver && segmentSize > 0) || segmentSize >= maxSegmentBytes;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private void compactSegments() {
+        List<CompletableFuture<Void>> requests = new ArrayList<>();
+        compactionRequests.drainTo(requests);
+        lastCompactionMillis = System.currentTimeMillis();
+        long startNanos = System.nanoTime();
+        try {
+            long compactedSegment = segmentNumber;
+            closeSegment();
+            writeSnapshot(compactedSegment);
+            archiveSegmentsUpTo(compactedSegment);
+            segmentNumber = compactedSegment + 1;
+            if (isRunning) {
+                openSegment();
+            }
+            compactionLatency.record(System.nanoTime() - startNanos);
+            requests.forEach(request -> request.complete(null));
+        } catch (IOException e) {
+            System.out.println("Unable to compact play events: " + e.getMessage());
+            requests.forEach(request -> request.completeExceptionally(e));
+            if (segmentChannel == null || !segmentChannel.isOpen()) {
+                reopenAfterFailure();
+            }
+        }
+    }
+
+    private void writeSnapshot(long compactedSegment) throws IOException {
+        Path tempFile = Path.of(songsFile + TEMP_FILE_EXTENSION);
+        try (BufferedWriter bufferedWriter = Files.newBufferedWriter(tempFile)) {
+            bufferedWriter.write(COMPACTED_SEGMENT_HEADER + compactedSegment + System.lineSeparator());
+            for (Map.Entry<Song, Long> entry : durableCounts.entrySet()) {
+                Song song = entry.getKey();
+                bufferedWriter.write(song.getName().replaceAll("\\s", PlaylistService.SEPARATOR) + SPACE +
+                    song.getSingerName().replaceAll("\\s", PlaylistService.SEPARATOR) + SPACE +
+                    entry.getValue() + System.lineSeparator());
+            }
+        }
+        Files.move(tempFile, songsFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        try {
+            SongSnapshot.write(songsFile, durableCounts);
+        } catch (IOException e) {
+            System.out.println("Unable to write the binary songs snapshot: " + e.getMessage());
+        }
+    }
+
+    private long recover(long compactedSegment) throws IOException {
+        long lastSegment = compactedSegment;
+        for (Map.Entry<Long, Path> segment : listSegments().entrySet()) {
+            long number = segment.getKey();
+            lastSegment = Math.max(lastSegment, number);
+            if (number <= compactedSegment) {
+                archive(segment.getValue());
+                continue;
+            }
+            long validPosition = readEvents(segment.getValue(), this::replay);
+            try (FileChannel channel = FileChannel.open(segment.getValue(), StandardOpenOption.WRITE)) {
+                if (channel.size() > validPosition) {
+                    channel.truncate(validPosition);
+                }
+            }
+        }
+        return lastSegment;
+    }
+
+    private void replay(PlayEvent event) {
+        Song song = songs.get(new Song(event.songName(), event.singerName(), 0));
+        if (song != null) {
+            song.increasePlayingTimes();
+        }
+    }
+
+    private void archiveSegmentsUpTo(long compactedSegment) throws IOException {
+        for (Map.Entry<Long, Path> segment : listSegments().entrySet()) {
+            if (segment.getKey() <= compactedSegment) {
+                archive(segment.getValue());
+            }
+        }
+    }
+
+    private void archive(Path segment) throws IOException {
+        Files.move(segment, Path.of(segment + COMPACTED_EXTENSION), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private TreeMap<Long, Path> listSegments() throws IOException {
+        TreeMap<Long, Path> segments = new TreeMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory,
+            SEGMENT_PREFIX + "*" + SEGMENT_EXTENSION)) {
+            for (Path segment : stream) {
+                String fileName = segment.getFileName().toString();
+                String number = fileName.substring(SEGMENT_PREFIX.length(),
+                    fileName.length() - SEGMENT_EXTENSION.length());
+                segments.put(Long.parseLong(number), segment);
+            }
+        }
+        return segments;
+    }
+
+    private void openSegment() throws IOException {
+        segmentChannel = segmentOpener.open(directory.resolve(SEGMENT_PREFIX + segmentNumber + SEGMENT_EXTENSION));
+    }
+
+    private void closeSegment() {
+        if (segmentChannel == null) {
+            return;
+        }
+        try {
+            segmentChannel.close();
+        } catch (IOException e) {
+            System.out.println("Unable to close play event segment: " + e.getMessage());
+        }
+    }
+
+    private void reopenAfterFailure() {
+        try {
+            openSegment();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to reopen the play event log", e);
+        }
+    }
+
+    private static long readCompactedSegment(Path songsFile) throws IOException {
+        if (!Files.exists(songsFile)) {
+            return 0;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(songsFile)) {
+            String firstLine = reader.readLine();
+            if (firstLine != null && firstLine.startsWith(COMPACTED_SEGMENT_HEADER)) {
+                return Long.parseLong(firstLine.substring(COMPACTED_SEGMENT_HEADER.length()).strip());
+            }
+        }
+        return 0;
+    }
+
+    private static ByteBuffer encode(PlayEvent event) {
+        byte[] songName = event.songName().getBytes(StandardCharsets.UTF_8);
+        byte[] singerName = event.singerName().getBytes(StandardCharsets.UTF_8);
+        byte[] user = event.user().getBytes(StandardCharsets.UTF_8);
+        int length = Long.BYTES + Short.BYTES * 3 + songName.length + singerName.length + user.length;
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + length);
+        record.putInt(length);
+        record.putInt(0);
+        record.putLong(event.timestamp());
+        putString(record, songName);
+        putString(record, singerName);
+        putString(record, user);
+        record.putInt(Integer.BYTES, crc(record.slice(RECORD_HEADER_SIZE, length)));
+        return record.flip();
+    }
+
+    private static PlayEvent decode(ByteBuffer body) {
+        long timestamp = body.getLong();
+        String songName = getString(body);
+        String singerName = getString(body);
+        String user = getString(body);
+        return new PlayEvent(songName, singerName, user, timestamp);
+    }
+
+    private static void putString(ByteBuffer buffer, byte[] bytes) {
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[Short.toUnsignedInt(buffer.getShort())];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int crc(ByteBuffer body) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(body.duplicate());
+        return (int) crc32.getValue();
+    }
+
+    private record PendingPlay(Song song, PlayEvent event, CompletableFuture<Void> written) {
+    }
+
+    /**
+     * Opens a segment for appending.
+     */
+    @FunctionalInterface
+    interface SegmentOpener {
+        FileChannel open(Path segment) throws IOException;
+    }
+}
@@ -1,38 +1,52 @@
 package bg.sofia.uni.fmi.mjt.spotify.song;
 
-import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
+/**
+ * A named set of songs. Songs can be added from several threads at once and read without locking.
+ */
 public class Playlist {
     private final String playlistName;
-    private Set<Song> songs;
+    private final Set<Song> songs;
 
     public Playlist(String playlistName) {
         this.playlistName = playlistName;
-        this.songs = new HashSet<>();
+        this.songs = ConcurrentHashMap.newKeySet();
     }
 
-    public void addSong(Song song) {
-        songs.add(song);
+    /**
+     * @return true if the song was added, false if the playlist already contains it
+     */
+    public boolean addSong(Song song) {
+        return songs.add(song);
+    }
+
+    public boolean containsSong(Song song) {
+        return songs.contains(song);
     }
 
     public void setSongs(Set<Song> songs) {
-        this.songs = songs;
+        this.songs.clear();
+        this.songs.addAll(songs);
     }
 
     public String getPlaylistName() {
         return playlistName;
     }
 
+    /**
+     * @return a snapshot of the songs that later adds do not change
+     */
     public Set<Song> getSongs() {
-        return songs;
+        return Set.copyOf(songs);
     }
 
     @Override
     public String toString() {
         return  "Playlist " + playlistName + ":" + System.lineSeparator() +
-            songs.stream()
+            getSongs().stream()
                 .map(Song::toString)
                 .collect(Collectors.joining(System.lineSeparator()));
 
@@ -0,0 +1,164 @@
+package bg.sofia.uni.fmi.mjt.spotify.song;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Keeps the song lists of recently used playlists in memory. A playlist is loaded on its first access and the least
+ * recently used playlists are evicted once more than the capacity are loaded. Evicting a playlist drops nothing,
+ * because a song is added to a cached playlist only after it has been written to the storage.
+ *
+ * <p>Every cached playlist has its own lock, which is held while it is loaded and while a song is added to it. The
+ * map of cached playlists is never locked during storage I/O, so loads and adds of different playlists do not block
+ * each other.</p>
+ */
+public class PlaylistCache {
+    public static final int DEFAULT_CAPACITY = 1024;
+    private static final int EVICTION_BATCH_DIVISOR = 10;
+
+    private final int capacity;
+    private final Function<String, Playlist> loader;
+    private final Map<String, CachedPlaylist> cachedPlaylists;
+    private final AtomicLong accessClock;
+    private final ReentrantLock evictionLock;
+
+    /**
+     * @param loader reads a playlist by its name, it is called at most once per load of a playlist
+     */
+    public PlaylistCache(int capacity, Function<String, Playlist> loader) {
+        this.capacity = capacity;
+        this.loader = loader;
+        this.cachedPlaylists = new ConcurrentHashMap<>();
+        this.accessClock = new AtomicLong();
+        this.evictionLock = new ReentrantLock();
+    }
+
+    public Playlist get(String playlistName) {
+        CachedPlaylist cachedPlaylist = cachedPlaylists.get(playlistName);
+        Playlist playlist = cachedPlaylist == null ? null : cachedPlaylist.playlist;
+        if (playlist != null && !cachedPlaylist.isEvicted) {
+            cachedPlaylist.lastAccess = accessClock.incrementAndGet();
+            return playlist;
+        }
+        return withPlaylist(playlistName, loadedPlaylist -> loadedPlaylist);
+    }
+
+    public void put(Playlist playlist) {
+        CachedPlaylist cachedPlaylist = new CachedPlaylist(accessClock.incrementAndGet());
+        cachedPlaylist.playlist = playlist;
+        cachedPlaylists.put(playlist.getPlaylistName(), cachedPlaylist);
+        evictIfNeeded(playlist.getPlaylistName());
+    }
+
+    /**
+     * Adds the song to the playlist, loading it if needed. Adds to the same playlist run one at a time, so
+     * {@code store} sees the adds in the order they happened. Adds to different playlists do not block each other.
+     *
+     * @param store writes the song to the storage before it is added to the cached playlist, it is called only if
+     *              the song is not in the playlist yet; if it throws, the playlist is left unchanged
+     * @return true if the song was added, false if the playlist already contains it
+     */
+    public boolean addSong(String playlistName, Song song, Consumer<Playlist> store) {
+        return withPlaylist(playlistName, playlist -> {
+            if (playlist.containsSong(song)) {
+                return false;
+            }
+            store.accept(playlist);
+            return playlist.addSong(song);
+        });
+    }
+
+    public int getCachedPlaylistsCount() {
+        return cachedPlaylists.size();
+    }
+
+    /**
+     * Runs the action on the playlist while holding its lock, loading the playlist first if needed. An entry evicted
+     * while waiting for its lock is skipped and the playlist is looked up again.
+     */
+    private <T> T withPlaylist(String playlistName, Function<Playlist, T> action) {
+        while (true) {
+            CachedPlaylist cachedPlaylist = cachedPlaylists.computeIfAbsent(playlistName,
+                name -> new CachedPlaylist(accessClock.incrementAndGet()));
+            T result;
+            cachedPlaylist.lock.lock();
+            try {
+                if (cachedPlaylist.isEvicted) {
+                    continue;
+                }
+                if (cachedPlaylist.playlist == null) {
+                    load(playlistName, cachedPlaylist);
+                }
+                cachedPlaylist.lastAccess = accessClock.incrementAndGet();
+                result = action.apply(cachedPlaylist.playlist);
+            } finally {
+                cachedPlaylist.lock.unlock();
+            }
+            evictIfNeeded(playlistName);
+            return result;
+        }
+    }
+
+    private void load(String playlistName, CachedPlaylist cachedPlaylist) {
+        try {
+            cachedPlaylist.playlist = loader.apply(playlistName);
+        } catch (RuntimeException e) {
+            cachedPlaylist.isEvicted = true;
+            cachedPlaylists.remove(playlistName, cachedPlaylist);
+            throw e;
+        }
+    }
+
+    /**
+     * Evicts the least recently used playlists in batches, so the scan over the cached playlists runs once per
+     * {@code capacity / 10} loads instead of on every load. Only one thread evicts at a time and the others do not
+     * wait for it. A playlist that is in use is not evicted.
+     */
+    private void evictIfNeeded(String justUsed) {
+        if (cachedPlaylists.size() <= capacity || !evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            int targetSize = capacity - capacity / EVICTION_BATCH_DIVISOR;
+            List<Map.Entry<String, CachedPlaylist>> victims = cachedPlaylists.entrySet().stream()
+                .filter(entry -> !entry.getKey().equals(justUsed))
+                .sorted(Comparator.comparingLong(entry -> entry.getValue().lastAccess))
+                .limit(Math.max(0, cachedPlaylists.size() - targetSize))
+                .toList();
+            victims.forEach(victim -> evict(victim.getKey(), victim.getValue()));
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private void evict(String playlistName, CachedPlaylist cachedPlaylist) {
+        if (!cachedPlaylist.lock.tryLock()) {
+            return;
+        }
+        try {
+            if (cachedPlaylists.remove(playlistName, cachedPlaylist)) {
+                cachedPlaylist.isEvicted = true;
+            }
+        } finally {
+            cachedPlaylist.lock.unlock();
+        }
+    }
+
+    private static class CachedPlaylist {
+        private final ReentrantLock lock;
+        private volatile Playlist playlist;
+        private volatile boolean isEvicted;
+        private volatile long lastAccess;
+
+        CachedPlaylist(long lastAccess) {
+            this.lock = new ReentrantLock();
+            this.lastAccess = lastAccess;
+        }
+    }
+}
@@ -4,68 +4,93 @@ import bg.sofia.uni.fmi.mjt.spotify.exception.NotFoundPlaylistException;
 import bg.sofia.uni.fmi.mjt.spotify.exception.NotFoundSongException;
 import bg.sofia.uni.fmi.mjt.spotify.exception.PlaylistAlreadyExistsException;
 import bg.sofia.uni.fmi.mjt.spotify.exception.SongAlreadyExistsException;
-import bg.sofia.uni.fmi.mjt.spotify.server.MusicServerThread;
+import bg.sofia.uni.fmi.mjt.spotify.exception.StreamLimitExceededException;
+import bg.sofia.uni.fmi.mjt.spotify.metrics.MetricsRegistry;
+import bg.sofia.uni.fmi.mjt.spotify.protocol.FrameSink;
+import bg.sofia.uni.fmi.mjt.spotify.streaming.StreamRegistry;
+import bg.sofia.uni.fmi.mjt.spotify.streaming.StreamingScheduler;
 
+import javax.sound.sampled.UnsupportedAudioFileException;
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.Reader;
-import java.nio.channels.SocketChannel;
-import java.nio.file.DirectoryIteratorException;
-import java.nio.file.DirectoryStream;
-import java.nio.file.Files;
+import java.io.UncheckedIOException;
 import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.util.Arrays;
-import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.concurrent.ConcurrentHashMap;
 
-public class PlaylistService {
+public class PlaylistService implements AutoCloseable {
     public static final String SEPARATOR = "-";
-    private final Set<Playlist> playlists;
+    private final PlaylistStorage playlistStorage;
+    private final Set<String> playlistNames;
+    private final PlaylistCache playlistCache;
     private final Set<Song> allSongs;
-    private  MusicServerThread musicServerThread;
+    private final Map<String, Song> songsByKey;
+    private final SongSearchIndex searchIndex;
+    private final SongLeaderboard leaderboard;
+    private final PlayEventLog playEventLog;
+    private final StreamingScheduler streamingScheduler;
+    private final StreamRegistry streamRegistry;
 
     private static final String SONGS_FILE_PATH = "resources\\AllSongs.txt";
-    private static final String PLAYLISTS_FILE_PATH = "resources\\playlists\\";
+    private static final String PLAY_EVENTS_DIRECTORY_PATH = "resources\\play-events\\";
+    private static final String COMMENT_PREFIX = "#";
+    private static final char KEY_SEPARATOR = '\u0000';
     private static final String SPACE = " ";
-    private static final String TEXT_FILE_EXTENSION = ".txt";
     private static final int SONG_NAME_INDEX = 0;
     private static final int SINGER_NAME_INDEX = 1;
     private static final int PLAYING_TIMES_INDEX = 2;
 
     public PlaylistService() {
-        playlists = readPlaylistsFromFile();
-        try {
-            allSongs = readSongsFromFile(new FileReader(SONGS_FILE_PATH));
-        } catch (FileNotFoundException e) {
-            throw new RuntimeException(e);
-        }
+        this(new TextFilePlaylistStorage());
+    }
+
+    /**
+     * Reads only the playlist names at start. The songs of a playlist are read on its first access.
+     */
+    public PlaylistService(PlaylistStorage playlistStorage) {
+        this.playlistStorage = playlistStorage;
+        playlistNames = ConcurrentHashMap.newKeySet();
+        playlistNames.addAll(playlistStorage.readPlaylistNames());
+        playlistCache = new PlaylistCache(PlaylistCache.DEFAULT_CAPACITY, playlistStorage::readPlaylist);
+        allSongs = readSongs(Path.of(SONGS_FILE_PATH));
+        playEventLog = new PlayEventLog(Path.of(PLAY_EVENTS_DIRECTORY_PATH), Path.of(SONGS_FILE_PATH), allSongs);
+        songsByKey = indexSongs(allSongs);
+        searchIndex = new SongSearchIndex(allSongs);
+        leaderboard = new SongLeaderboard(allSongs);
+        streamingScheduler = new StreamingScheduler();
+        streamRegistry = new StreamRegistry(streamingScheduler);
     }
 
     public PlaylistService(Reader playlistsReader, Set<Playlist> playlists) {
-        this.playlists = playlists;
+        this.playlistStorage = new TextFilePlaylistStorage();
+        Map<String, Playlist> playlistsByName = new HashMap<>();
+        playlists.forEach(playlist -> playlistsByName.put(playlist.getPlaylistName(), playlist));
+        this.playlistNames = ConcurrentHashMap.newKeySet();
+        this.playlistNames.addAll(playlistsByName.keySet());
+        this.playlistCache = new PlaylistCache(PlaylistCache.DEFAULT_CAPACITY, playlistsByName::get);
         this.allSongs = readSongsFromFile(playlistsReader);
+        this.songsByKey = indexSongs(allSongs);
+        this.searchIndex = new SongSearchIndex(allSongs);
+        this.leaderboard = new SongLeaderboard(allSongs);
+        this.playEventLog = null;
+        this.streamingScheduler = new StreamingScheduler();
+        this.streamRegistry = new StreamRegistry(streamingScheduler);
     }
 
     public Set<Song> searchByKeywords(Set<String> keywords) {
-        Set<String> searchableKeywords = keywords.stream()
-            .map(String::toLowerCase)
-            .collect(Collectors.toUnmodifiableSet());
+        return searchByKeywords(keywords, SearchMode.ANY, Integer.MAX_VALUE);
+    }
 
-        return allSongs.stream()
-            .filter(song -> Stream.concat(Arrays.stream(song.getName().split(SPACE)),
-                    Arrays.stream(song.getSingerName().split(SPACE)))
-                .map(String::toLowerCase)
-                .anyMatch(searchableKeywords::contains))
-            .collect(Collectors.toUnmodifiableSet());
+    public Set<Song> searchByKeywords(Set<String> keywords, SearchMode mode, int limit) {
+        return searchIndex.search(keywords, mode, limit);
     }
 
     public List<Song> getTopNSongs(int number) {
@@ -74,67 +99,120 @@ public class PlaylistService {
                 " Please try again and enter positive number");
         }
 
-        return allSongs.stream()
-            .sorted(Comparator.comparing(Song::getPlayingTimes).reversed())
-            .limit(number)
-            .toList();
+        return leaderboard.top(number);
     }
 
     public void createPlaylist(String playlistName) throws PlaylistAlreadyExistsException {
-        if (checkIfPlaylistNameAlreadyExists(playlistName)) {
+        if (!playlistNames.add(playlistName)) {
             throw new PlaylistAlreadyExistsException("Unable to create playlist because playlist with this name " +
                 "already exists. Please try again and enter different playlist name");
         }
-        playlists.add(new Playlist(playlistName));
-        createPlaylistFile(playlistName);
+        try {
+            playlistStorage.createPlaylist(playlistName);
+        } catch (RuntimeException e) {
+            playlistNames.remove(playlistName);
+            throw e;
+        }
+        playlistCache.put(new Playlist(playlistName));
     }
 
+    /**
+     * Adds the song while holding only the lock of the playlist, so adding songs to different playlists never
+     * contends and the storage sees the songs in the order in which they were added. The song is written to the
+     * storage before it becomes visible in the playlist.
+     */
     public void addSongTo(String playlistName, String songName, String singerName)
         throws NotFoundPlaylistException, NotFoundSongException, SongAlreadyExistsException {
-        Playlist playlist = getPlaylistByName(playlistName);
+        checkPlaylistExists(playlistName);
         Song song = getSong(songName, singerName);
-        if (playlist.getSongs().contains(song)) {
+        boolean isAdded = playlistCache.addSong(playlistName, song,
+            playlist -> playlistStorage.addSong(playlistName, song));
+        if (!isAdded) {
             throw new SongAlreadyExistsException("Unable to add song " + " because playlist with this name " +
                 "already exists. Please try again and enter different playlist name");
         }
-        playlist.addSong(song);
-        String fileName = PLAYLISTS_FILE_PATH + playlistName.replaceAll("\\s", SEPARATOR) + TEXT_FILE_EXTENSION;
-        addSongToPlaylistFile(song, fileName);
     }
 
     public Playlist getPlaylistByName(String playlistName) throws NotFoundPlaylistException {
-        return playlists.stream()
-            .filter(playlist -> playlist.getPlaylistName().equals(playlistName))
-            .findFirst()
-            .orElseThrow(() -> new NotFoundPlaylistException("Playlist with name " + playlistName + " does not exist." +
-                " If you want you can create with command create-playlist <name_of_the_playlist>"));
+        checkPlaylistExists(playlistName);
+        return playlistCache.get(playlistName);
     }
 
-    public void playSong(String songName, String singerName, SocketChannel clientChannel) throws NotFoundSongException {
+    /**
+     * Streams the song to the connection, replacing the stream the connection was playing. Streams of other
+     * connections keep playing. The play is counted only once the stream has started.
+     */
+    public void playSong(String songName, String singerName, String user, FrameSink clientSink)
+        throws NotFoundSongException, StreamLimitExceededException {
         Song wantedSong = getSong(songName, singerName);
-        wantedSong.increasePlayingTimes();
-        updateAllSongsFile();
+        try {
+            streamRegistry.play(clientSink, user, wantedSong);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to stream song " + wantedSong, e);
+        } catch (UnsupportedAudioFileException e) {
+            throw new IllegalStateException("Unsupported audio file for song " + wantedSong, e);
+        }
 
-        musicServerThread = new MusicServerThread(clientChannel, wantedSong);
-        Thread musicThread = new Thread(musicServerThread);
-        musicThread.start();
+        if (playEventLog != null) {
+            playEventLog.append(wantedSong, user).join();
+        }
+        wantedSong.increasePlayingTimes();
+        leaderboard.update(wantedSong);
     }
 
-    public void stopSong() {
-        musicServerThread.stopMusic();
+    public void stopSong(FrameSink clientSink) {
+        streamRegistry.stop(clientSink);
     }
 
     public void updateAllSongsFile() {
-        try (BufferedWriter bufferedWriter = new BufferedWriter(new FileWriter(SONGS_FILE_PATH))) {
-            for (Song song : allSongs) {
-                bufferedWriter.write(song.getName().replaceAll("\\s", SEPARATOR) + SPACE +
-                    song.getSingerName().replaceAll("\\s", SEPARATOR) + SPACE +
-                    song.getPlayingTimes() + System.lineSeparator());
-                bufferedWriter.flush();
+        if (playEventLog != null) {
+            playEventLog.compact().join();
+        }
+    }
+
+    public void registerGauges(MetricsRegistry metrics) {
+        streamingScheduler.registerGauges(metrics);
+        if (playEventLog != null) {
+            playEventLog.registerGauges(metrics);
+        }
+    }
+
+    @Override
+    public void close() {
+        streamingScheduler.shutdown();
+        if (playEventLog != null) {
+            playEventLog.close();
+        }
+    }
+
+    /**
+     * Reads the songs from the binary snapshot of the songs file, falling back to the text when the snapshot is
+     * missing or stale. After a fallback the snapshot is written again for the next start.
+     */
+    private Set<Song> readSongs(Path songsFile) {
+        try {
+            Set<Song> songs = SongSnapshot.read(songsFile);
+            if (songs != null) {
+                return songs;
             }
         } catch (IOException e) {
-            throw new IllegalStateException("A problem occurred while writing to a file", e);
+            System.out.println("Unable to read the binary songs snapshot: " + e.getMessage());
         }
+
+        Set<Song> songs;
+        try {
+            songs = readSongsFromFile(new FileReader(songsFile.toFile()));
+        } catch (FileNotFoundException e) {
+            throw new RuntimeException(e);
+        }
+        Map<Song, Long> playingTimes = new HashMap<>();
+        songs.forEach(song -> playingTimes.put(song, song.getPlayingTimes()));
+        try {
+            SongSnapshot.write(songsFile, playingTimes);
+        } catch (IOException e) {
+            System.out.println("Unable to write the binary songs snapshot: " + e.getMessage());
+        }
+        return songs;
     }
 
     private Set<Song> readSongsFromFile(Reader songsReader) {
@@ -142,14 +220,14 @@ public class PlaylistService {
         try (BufferedReader bufferedReader = new BufferedReader(songsReader)) {
             String line;
             while ((line = bufferedReader.readLine()) != null) {
-                if (line.equals(System.lineSeparator())) {
+                if (line.isBlank() || line.startsWith(COMMENT_PREFIX)) {
                     continue;
                 }
                 String[] tokens = line.split(SPACE);
                 String songName = String.join(SPACE, tokens[SONG_NAME_INDEX].split(SEPARATOR));
                 String singerName = String.join(SPACE, tokens[SINGER_NAME_INDEX].split(SEPARATOR));
 
-                allSongs.add(new Song(songName, singerName, Integer.parseInt(tokens[PLAYING_TIMES_INDEX])));
+                allSongs.add(new Song(songName, singerName, Long.parseLong(tokens[PLAYING_TIMES_INDEX])));
             }
         } catch (IOException e) {
             throw new IllegalStateException("A problem occurred while reading from a file", e);
@@ -157,67 +235,32 @@ public class PlaylistService {
         return allSongs;
     }
 
-    private Set<Playlist> readPlaylistsFromFile() {
-        Set<Playlist> playlists = new HashSet<>();
-        Path dir = Path.of(PLAYLISTS_FILE_PATH);
-        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
-            for (Path playlistFile : stream) {
-                String fileName = playlistFile.getFileName().toString();
-                String withoutFileExtension = fileName.substring(0, fileName.length() - TEXT_FILE_EXTENSION.length());
-                String playlistName = String.join(SPACE, withoutFileExtension.split(SEPARATOR));
-                Playlist playlist = new Playlist(playlistName);
-                Set<Song> songs = new HashSet<>();
-                try (BufferedReader bufferedReader = Files.newBufferedReader(playlistFile)) {
-                    String line;
-                    while ((line = bufferedReader.readLine()) != null) {
-                        if (line.equals(System.lineSeparator())) {
-                            continue;
-                        }
-                        String[] tokens = line.split(SPACE);
-                        String songName = String.join(SPACE, tokens[SONG_NAME_INDEX].split(SEPARATOR));
-                        String singerName = String.join(SPACE, tokens[SINGER_NAME_INDEX].split(SEPARATOR));
-                        songs.add(new Song(songName, singerName, 0));
-                    }
-                }
-                playlist.setSongs(songs);
-                playlists.add(playlist);
-            }
-        } catch (IOException | DirectoryIteratorException e) {
-            throw new IllegalStateException("A problem occurred while reading from a file", e);
-        }
-        return playlists;
-    }
-
-    private void addSongToPlaylistFile(Song song, String filePath) {
-        try (BufferedWriter bufferedWriter = new BufferedWriter(new FileWriter(filePath, true))) {
-            bufferedWriter.write(song.getName().replaceAll("\\s", SEPARATOR) + SPACE +
-                song.getSingerName().replaceAll("\\s", SEPARATOR) + System.lineSeparator());
-            bufferedWriter.flush();
-        } catch (IOException e) {
-            throw new IllegalStateException("A problem occurred while writing to a file", e);
+    private void checkPlaylistExists(String playlistName) throws NotFoundPlaylistException {
+        if (!playlistNames.contains(playlistName)) {
+            throw new NotFoundPlaylistException("Playlist with name " + playlistName + " does not exist." +
+                " If you want you can create with command create-playlist <name_of_the_playlist>");
         }
     }
 
-    private void createPlaylistFile(String playlistName) {
-        String fileName = PLAYLISTS_FILE_PATH + playlistName.replaceAll("\\s", SEPARATOR) + TEXT_FILE_EXTENSION;
-        Path playlistFile = Paths.get(fileName);
-        try {
-            Files.createFile(playlistFile);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+    private Song getSong(String songName, String singerName) throws NotFoundSongException {
+        Song song = songsByKey.get(songKey(songName, singerName));
+        if (song == null) {
+            throw new NotFoundSongException("Song " + songName + " by: " + singerName + " is not available");
         }
+        return song;
     }
 
-    private boolean checkIfPlaylistNameAlreadyExists(String playlistName) {
-        return playlists.stream()
-            .anyMatch(playlist -> playlist.getPlaylistName().equals(playlistName));
+    private static Map<String, Song> indexSongs(Set<Song> songs) {
+        Map<String, Song> songsByKey = new HashMap<>(songs.size() * 2);
+        songs.forEach(song -> songsByKey.putIfAbsent(songKey(song.getName(), song.getSingerName()), song));
+        return songsByKey;
     }
 
-    private Song getSong(String songName, String singerName) throws NotFoundSongException {
-        return allSongs.stream()
-            .filter(currentSong -> currentSong.getName().equalsIgnoreCase(songName) &&
-                currentSong.getSingerName().equalsIgnoreCase(singerName))
-            .findFirst().orElseThrow(() -> new NotFoundSongException("Song " + songName + " by: " + singerName +
-                " is not available"));
+    /**
+     * Song names and singers are matched ignoring case, so both are lower-cased. The separator cannot appear in
+     * either of them, which keeps "a b" + "c" and "a" + "b c" apart.
+     */
+    private static String songKey(String songName, String singerName) {
+        return songName.toLowerCase(Locale.ROOT) + KEY_SEPARATOR + singerName.toLowerCase(Locale.ROOT);
     }
 }
@@ -0,0 +1,19 @@
+package bg.sofia.uni.fmi.mjt.spotify.song;
+
+import java.util.Set;
+
+/**
+ * Where playlists are kept between runs of the server.
+ */
+public interface PlaylistStorage {
+    /**
+     * @return the names of all the playlists, without reading their songs
+     */
+    Set<String> readPlaylistNames();
+
+    Playlist readPlaylist(String playlistName);
+
+    void createPlaylist(String playlistName);
+
+    void addSong(String playlistName, Song song);
+}
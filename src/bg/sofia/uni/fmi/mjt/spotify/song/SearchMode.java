@@ -0,0 +1,13 @@
+package bg.sofia.uni.fmi.mjt.spotify.song;
+
+public enum SearchMode {
+    /**
+     * A song matches if its name or singer name contains at least one of the keywords
+     */
+    ANY,
+
+    /**
+     * A song matches only if its name and singer name together contain all of the keywords
+     */
+    ALL
+}
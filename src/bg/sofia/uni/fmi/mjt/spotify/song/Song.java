@@ -1,20 +1,26 @@
 package bg.sofia.uni.fmi.mjt.spotify.song;
 
 import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
 
 public class Song {
     private final String name;
     private final String singerName;
-    private int playingTimes;
+    private final LongAdder playingTimes;
 
-    public Song(String name, String singerName, int playingTimes) {
+    public Song(String name, String singerName, long playingTimes) {
         this.name = name;
         this.singerName = singerName;
-        this.playingTimes = playingTimes;
+        this.playingTimes = new LongAdder();
+        this.playingTimes.add(playingTimes);
     }
 
+    /**
+     * Counts a play. Plays of the same song on different threads update separate cells, so none of them is lost
+     * and hot songs do not contend on a single counter.
+     */
     public void increasePlayingTimes() {
-        playingTimes++;
+        playingTimes.increment();
     }
 
     public String getName() {
@@ -25,8 +31,8 @@ public class Song {
         return singerName;
     }
 
-    public int getPlayingTimes() {
-        return playingTimes;
+    public long getPlayingTimes() {
+        return playingTimes.sum();
     }
 
     @Override
@@ -0,0 +1,88 @@
+package bg.sofia.uni.fmi.mjt.spotify.song;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Songs ordered by playing times, most played first. A play only marks the song as changed, without taking a lock,
+ * so plays on different threads do not wait for each other. The changed songs are moved, in O(log n) each, by the
+ * next read, which then takes the top N songs in O(N) without sorting the catalog. Reads and moves share one lock,
+ * so a read never misses a song that is being moved and sees every song at most once.
+ */
+public class SongLeaderboard {
+    private static final Comparator<Entry> ORDER = Comparator.comparingLong(Entry::playingTimes).reversed()
+        .thenComparing(entry -> entry.song().getName())
+        .thenComparing(entry -> entry.song().getSingerName());
+
+    private final NavigableSet<Entry> ranking;
+    private final Map<Song, Entry> entries;
+    private final Set<Song> changedSongs;
+
+    public SongLeaderboard(Collection<Song> songs) {
+        this.ranking = new TreeSet<>(ORDER);
+        this.entries = new HashMap<>();
+        this.changedSongs = ConcurrentHashMap.newKeySet();
+        for (Song song : songs) {
+            move(song);
+        }
+    }
+
+    /**
+     * Marks the song to be moved to the position matching its playing times by the next read.
+     */
+    public void update(Song song) {
+        changedSongs.add(song);
+    }
+
+    public synchronized void remove(Song song) {
+        changedSongs.remove(song);
+        Entry previous = entries.remove(song);
+        if (previous != null) {
+            ranking.remove(previous);
+        }
+    }
+
+    public synchronized List<Song> top(int number) {
+        moveChangedSongs();
+        List<Song> topSongs = new ArrayList<>(Math.min(number, entries.size()));
+        Iterator<Entry> iterator = ranking.iterator();
+        while (topSongs.size() < number && iterator.hasNext()) {
+            topSongs.add(iterator.next().song());
+        }
+        return topSongs;
+    }
+
+    /**
+     * A song is unmarked before its count is read, so a play counted after that marks it again for the next read
+     * and the last move of a song always ranks it by a count that includes every play counted before its update.
+     */
+    private void moveChangedSongs() {
+        Iterator<Song> iterator = changedSongs.iterator();
+        while (iterator.hasNext()) {
+            Song song = iterator.next();
+            iterator.remove();
+            move(song);
+        }
+    }
+
+    private void move(Song song) {
+        Entry moved = new Entry(song.getPlayingTimes(), song);
+        Entry previous = entries.put(song, moved);
+        if (previous != null) {
+            ranking.remove(previous);
+        }
+        ranking.add(moved);
+    }
+
+    private record Entry(long playingTimes, Song song) {
+    }
+}
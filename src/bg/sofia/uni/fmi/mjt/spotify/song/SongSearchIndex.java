@@ -0,0 +1,109 @@
+package bg.sofia.uni.fmi.mjt.spotify.song;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Inverted index from the lower-cased words of song and singer names to the songs that contain them.
+ */
+public class SongSearchIndex {
+    private static final String WHITESPACE_REGEX = "\\s+";
+    private final Map<String, Set<Song>> postings;
+
+    public SongSearchIndex() {
+        this.postings = new ConcurrentHashMap<>();
+    }
+
+    public SongSearchIndex(Collection<Song> songs) {
+        this();
+        for (Song song : songs) {
+            addPostings(song);
+        }
+    }
+
+    public void add(Song song) {
+        addPostings(song);
+    }
+
+    public void remove(Song song) {
+        for (String token : tokenize(song)) {
+            postings.computeIfPresent(token, (key, songs) -> {
+                songs.remove(song);
+                return songs.isEmpty() ? null : songs;
+            });
+        }
+    }
+
+    /**
+     * @param limit the maximum number of songs in the result
+     * @return the songs matching the keywords according to the search mode
+     */
+    public Set<Song> search(Set<String> keywords, SearchMode mode, int limit) {
+        List<Set<Song>> matchingPostings = keywords.stream()
+            .map(String::toLowerCase)
+            .distinct()
+            .map(keyword -> postings.getOrDefault(keyword, Set.of()))
+            .toList();
+        if (matchingPostings.isEmpty() || limit <= 0) {
+            return Set.of();
+        }
+        return mode == SearchMode.ALL ? intersect(matchingPostings, limit) : union(matchingPostings, limit);
+    }
+
+    private void addPostings(Song song) {
+        for (String token : tokenize(song)) {
+            postings.computeIfAbsent(token, key -> ConcurrentHashMap.newKeySet()).add(song);
+        }
+    }
+
+    private static Set<Song> union(List<Set<Song>> matchingPostings, int limit) {
+        Set<Song> result = new LinkedHashSet<>();
+        for (Set<Song> songs : matchingPostings) {
+            for (Song song : songs) {
+                result.add(song);
+                if (result.size() == limit) {
+                    return Set.copyOf(result);
+                }
+            }
+        }
+        return Set.copyOf(result);
+    }
+
+    private static Set<Song> intersect(List<Set<Song>> matchingPostings, int limit) {
+        Set<Song> smallest = matchingPostings.stream()
+            .min(Comparator.comparingInt(Set::size))
+            .orElseThrow();
+        Set<Song> result = new HashSet<>();
+        for (Song song : smallest) {
+            if (matchingPostings.stream().allMatch(songs -> songs.contains(song))) {
+                result.add(song);
+                if (result.size() == limit) {
+                    break;
+                }
+            }
+        }
+        return Set.copyOf(result);
+    }
+
+    private static Set<String> tokenize(Song song) {
+        Set<String> tokens = new HashSet<>();
+        addTokens(tokens, song.getName());
+        addTokens(tokens, song.getSingerName());
+        return tokens;
+    }
+
+    private static void addTokens(Set<String> tokens, String text) {
+        for (String token : Objects.requireNonNullElse(text, "").toLowerCase().split(WHITESPACE_REGEX)) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+    }
+}
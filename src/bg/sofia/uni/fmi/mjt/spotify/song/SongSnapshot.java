@@ -0,0 +1,177 @@
+package bg.sofia.uni.fmi.mjt.spotify.song;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * Binary copy of the songs file that is read at start instead of parsing the text. It holds a header, one fixed-width
+ * record per song and a table of the distinct strings the records point into, so a singer with many songs is stored
+ * once. The snapshot remembers the size, the modification time and the checksum of the text file it was made from
+ * and is used only while they still match, so an edited or newer text file always wins, even one edited within the
+ * same millisecond without changing its size.
+ *
+ * <p>The header is {@code [int magic][int version][int crc32][int songs count][int string table size]
+ * [long source size][long source modified millis][int source crc32]} and every song record is
+ * {@code [int name offset][int name length][int singer offset][int singer length][long playing times]}. The first
+ * checksum covers everything after the header.</p>
+ */
+public final class SongSnapshot {
+    private static final int MAGIC = 0x53504E53;
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = Integer.BYTES * 6 + Long.BYTES * 2;
+    private static final int SOURCE_READ_BUFFER_SIZE = 64 * 1024;
+    private static final int RECORD_SIZE = Integer.BYTES * 4 + Long.BYTES;
+    private static final String SNAPSHOT_FILE_EXTENSION = ".bin";
+    private static final String TEMP_FILE_EXTENSION = ".tmp";
+
+    private SongSnapshot() {
+    }
+
+    public static Path fileOf(Path songsFile) {
+        return Path.of(songsFile + SNAPSHOT_FILE_EXTENSION);
+    }
+
+    /**
+     * Writes the snapshot of the given songs file, replacing the previous one atomically.
+     *
+     * @param playingTimes the songs of the songs file and their playing times
+     */
+    public static void write(Path songsFile, Map<Song, Long> playingTimes) throws IOException {
+        Map<String, Integer> stringOffsets = new HashMap<>();
+        ByteBuffer strings = ByteBuffer.allocate(1024);
+        ByteBuffer records = ByteBuffer.allocate(playingTimes.size() * RECORD_SIZE);
+        for (Map.Entry<Song, Long> entry : playingTimes.entrySet()) {
+            Song song = entry.getKey();
+            strings = putString(records, strings, stringOffsets, song.getName());
+            strings = putString(records, strings, stringOffsets, song.getSingerName());
+            records.putLong(entry.getValue());
+        }
+        records.flip();
+        strings.flip();
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).putInt(crc(records, strings))
+            .putInt(playingTimes.size()).putInt(strings.remaining())
+            .putLong(Files.size(songsFile)).putLong(Files.getLastModifiedTime(songsFile).toMillis())
+            .putInt(sourceCrc(songsFile))
+            .flip();
+
+        Path snapshotFile = fileOf(songsFile);
+        Path tempFile = Path.of(snapshotFile + TEMP_FILE_EXTENSION);
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer[] buffers = {header, records, strings};
+            while (header.hasRemaining() || records.hasRemaining() || strings.hasRemaining()) {
+                channel.write(buffers);
+            }
+        }
+        Files.move(tempFile, snapshotFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * @return the songs of the snapshot, or null if there is no valid snapshot of the current songs file
+     */
+    public static Set<Song> read(Path songsFile) throws IOException {
+        Path snapshotFile = fileOf(songsFile);
+        if (!Files.exists(snapshotFile) || !Files.exists(songsFile)) {
+            return null;
+        }
+        ByteBuffer snapshot;
+        try (FileChannel channel = FileChannel.open(snapshotFile, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE) {
+                return null;
+            }
+            snapshot = ByteBuffer.allocate((int) channel.size());
+            while (snapshot.hasRemaining()) {
+                if (channel.read(snapshot) < 0) {
+                    return null;
+                }
+            }
+        }
+        snapshot.flip();
+
+        if (snapshot.getInt() != MAGIC || snapshot.getInt() != VERSION) {
+            return null;
+        }
+        int checksum = snapshot.getInt();
+        int songsCount = snapshot.getInt();
+        int stringsSize = snapshot.getInt();
+        long sourceSize = snapshot.getLong();
+        long sourceModifiedMillis = snapshot.getLong();
+        int sourceChecksum = snapshot.getInt();
+        if ((long) songsCount * RECORD_SIZE + stringsSize != snapshot.remaining() ||
+            sourceSize != Files.size(songsFile) ||
+            sourceModifiedMillis != Files.getLastModifiedTime(songsFile).toMillis() ||
+            sourceChecksum != sourceCrc(songsFile)) {
+            return null;
+        }
+        ByteBuffer records = snapshot.slice(HEADER_SIZE, songsCount * RECORD_SIZE);
+        ByteBuffer strings = snapshot.slice(HEADER_SIZE + songsCount * RECORD_SIZE, stringsSize);
+        if (crc(records, strings) != checksum) {
+            return null;
+        }
+
+        Map<Integer, String> singerNames = new HashMap<>();
+        Set<Song> songs = HashSet.newHashSet(songsCount);
+        for (int i = 0; i < songsCount; i++) {
+            String name = getString(strings, records.getInt(), records.getInt());
+            int singerOffset = records.getInt();
+            int singerLength = records.getInt();
+            String singerName = singerNames.computeIfAbsent(singerOffset,
+                offset -> getString(strings, offset, singerLength));
+            songs.add(new Song(name, singerName, records.getLong()));
+        }
+        return songs;
+    }
+
+    private static ByteBuffer putString(ByteBuffer records, ByteBuffer strings, Map<String, Integer> stringOffsets,
+                                        String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        Integer offset = stringOffsets.get(value);
+        if (offset == null) {
+            if (strings.remaining() < bytes.length) {
+                int capacity = Math.max(strings.capacity() * 2, strings.position() + bytes.length);
+                strings = ByteBuffer.allocate(capacity).put(strings.flip());
+            }
+            offset = strings.position();
+            strings.put(bytes);
+            stringOffsets.put(value, offset);
+        }
+        records.putInt(offset).putInt(bytes.length);
+        return strings;
+    }
+
+    private static String getString(ByteBuffer strings, int offset, int length) {
+        return new String(strings.array(), strings.arrayOffset() + offset, length, StandardCharsets.UTF_8);
+    }
+
+    private static int sourceCrc(Path songsFile) throws IOException {
+        CRC32 crc = new CRC32();
+        ByteBuffer buffer = ByteBuffer.allocate(SOURCE_READ_BUFFER_SIZE);
+        try (FileChannel channel = FileChannel.open(songsFile, StandardOpenOption.READ)) {
+            while (channel.read(buffer) >= 0) {
+                crc.update(buffer.flip());
+                buffer.clear();
+            }
+        }
+        return (int) crc.getValue();
+    }
+
+    private static int crc(ByteBuffer records, ByteBuffer strings) {
+        CRC32 crc = new CRC32();
+        crc.update(records.duplicate());
+        crc.update(strings.duplicate());
+        return (int) crc.getValue();
+    }
+}
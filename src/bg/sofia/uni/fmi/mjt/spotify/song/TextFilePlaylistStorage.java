@@ -0,0 +1,99 @@
+package bg.sofia.uni.fmi.mjt.spotify.song;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Keeps every playlist in its own text file with one song per line.
+ */
+public class TextFilePlaylistStorage implements PlaylistStorage {
+    public static final String PLAYLISTS_FILE_PATH = "resources\\playlists\\";
+    private static final String SEPARATOR = PlaylistService.SEPARATOR;
+    private static final String SPACE = " ";
+    private static final String TEXT_FILE_EXTENSION = ".txt";
+    private static final int SONG_NAME_INDEX = 0;
+    private static final int SINGER_NAME_INDEX = 1;
+
+    private final String playlistsDirectory;
+
+    public TextFilePlaylistStorage() {
+        this(PLAYLISTS_FILE_PATH);
+    }
+
+    public TextFilePlaylistStorage(String playlistsDirectory) {
+        this.playlistsDirectory = playlistsDirectory;
+    }
+
+    @Override
+    public Set<String> readPlaylistNames() {
+        Set<String> playlistNames = new HashSet<>();
+        Path dir = Path.of(playlistsDirectory);
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path playlistFile : stream) {
+                String fileName = playlistFile.getFileName().toString();
+                String withoutFileExtension = fileName.substring(0, fileName.length() - TEXT_FILE_EXTENSION.length());
+                playlistNames.add(String.join(SPACE, withoutFileExtension.split(SEPARATOR)));
+            }
+        } catch (IOException | DirectoryIteratorException e) {
+            throw new IllegalStateException("A problem occurred while reading from a file", e);
+        }
+        return playlistNames;
+    }
+
+    @Override
+    public Playlist readPlaylist(String playlistName) {
+        Playlist playlist = new Playlist(playlistName);
+        Set<Song> songs = new HashSet<>();
+        try (BufferedReader bufferedReader = Files.newBufferedReader(Path.of(getPlaylistFileName(playlistName)))) {
+            String line;
+            while ((line = bufferedReader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                String[] tokens = line.split(SPACE);
+                String songName = String.join(SPACE, tokens[SONG_NAME_INDEX].split(SEPARATOR));
+                String singerName = String.join(SPACE, tokens[SINGER_NAME_INDEX].split(SEPARATOR));
+                songs.add(new Song(songName, singerName, 0));
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("A problem occurred while reading from a file", e);
+        }
+        playlist.setSongs(songs);
+        return playlist;
+    }
+
+    @Override
+    public void createPlaylist(String playlistName) {
+        Path playlistFile = Paths.get(getPlaylistFileName(playlistName));
+        try {
+            Files.createFile(playlistFile);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void addSong(String playlistName, Song song) {
+        try (BufferedWriter bufferedWriter = new BufferedWriter(new FileWriter(getPlaylistFileName(playlistName),
+            true))) {
+            bufferedWriter.write(song.getName().replaceAll("\\s", SEPARATOR) + SPACE +
+                song.getSingerName().replaceAll("\\s", SEPARATOR) + System.lineSeparator());
+            bufferedWriter.flush();
+        } catch (IOException e) {
+            throw new IllegalStateException("A problem occurred while writing to a file", e);
+        }
+    }
+
+    private String getPlaylistFileName(String playlistName) {
+        return playlistsDirectory + playlistName.replaceAll("\\s", SEPARATOR) + TEXT_FILE_EXTENSION;
+    }
+}
@@ -0,0 +1,374 @@
+package bg.sofia.uni.fmi.mjt.spotify.storage;
+
+import bg.sofia.uni.fmi.mjt.spotify.metrics.LatencyHistogram;
+import bg.sofia.uni.fmi.mjt.spotify.metrics.MetricsRegistry;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+ * Embedded key-value store kept in a single log-structured file. Every change is appended to the file as a
+ * CRC-checked record and forced to disk before it becomes visible, so the file is its own write-ahead log. Only the
+ * live keys and the positions of their latest records are kept in a sorted in-memory index. Values stay on disk and
+ * every read of a value is a positional read of its record, so reads never wait for writes and key scans never
+ * touch the file.
+ *
+ * <p>A checkpoint rewrites only the live records into a new file and atomically replaces the old one with it. It runs
+ * when overwritten and deleted records take up more than half of a file larger than {@link #CHECKPOINT_MIN_BYTES}.
+ * Recovery reads the file once from the start and cuts off a torn record left at its end by a crash. Reads wait only
+ * for a checkpoint, which moves the records to a new file.</p>
+ *
+ * <p>Every record is {@code [int body length][int crc32][byte operation][int key length][key]
+ * [int value length][value]}, where the key and the value are in UTF-8.</p>
+ */
+public class StorageEngine implements AutoCloseable {
+    public static final long CHECKPOINT_MIN_BYTES = 1024 * 1024;
+    private static final String TEMP_FILE_EXTENSION = ".tmp";
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    private static final int RECORD_HEADER_SIZE = Integer.BYTES * 2;
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private final Path file;
+    private final long checkpointMinBytes;
+    private final NavigableMap<String, RecordLocation> index;
+    private final ReadWriteLock fileLock;
+    private final LatencyHistogram writeLatency;
+    private FileChannel channel;
+    private long fileBytes;
+    private long liveBytes;
+
+    public StorageEngine(Path file) {
+        this(file, CHECKPOINT_MIN_BYTES);
+    }
+
+    public StorageEngine(Path file, long checkpointMinBytes) {
+        this.file = file;
+        this.checkpointMinBytes = checkpointMinBytes;
+        this.index = new ConcurrentSkipListMap<>();
+        this.fileLock = new ReentrantReadWriteLock();
+        this.writeLatency = MetricsRegistry.getDefault().histogram("storage.write");
+        try {
+            Files.deleteIfExists(tempFile());
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+            recover();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to open storage file " + file, e);
+        }
+    }
+
+    public String get(String key) {
+        fileLock.readLock().lock();
+        try {
+            RecordLocation location = index.get(key);
+            return location == null ? null : readValue(location);
+        } finally {
+            fileLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the keys starting with the prefix, in key order, without reading their values
+     */
+    public NavigableSet<String> keys(String prefix) {
+        return Collections.unmodifiableNavigableSet(
+            index.subMap(prefix, true, prefix + Character.MAX_VALUE, false).navigableKeySet());
+    }
+
+    /**
+     * @return the keys starting with the prefix and their values, in key order
+     */
+    public NavigableMap<String, String> scan(String prefix) {
+        NavigableMap<String, String> entries = new TreeMap<>();
+        fileLock.readLock().lock();
+        try {
+            index.subMap(prefix, true, prefix + Character.MAX_VALUE, false)
+                .forEach((key, location) -> entries.put(key, readValue(location)));
+        } finally {
+            fileLock.readLock().unlock();
+        }
+        return Collections.unmodifiableNavigableMap(entries);
+    }
+
+    public boolean isEmpty() {
+        return index.isEmpty();
+    }
+
+    public int getKeysCount() {
+        return index.size();
+    }
+
+    public synchronized void put(String key, String value) {
+        ByteBuffer record = encode(PUT, key, value);
+        RecordLocation location = new RecordLocation(fileBytes, record.remaining());
+        write(List.of(record));
+        apply(PUT, key, location);
+        checkpointIfNeeded();
+    }
+
+    /**
+     * Writes all the entries with a single disk sync.
+     */
+    public synchronized void putAll(Map<String, String> entries) {
+        List<String> keys = new ArrayList<>(entries.size());
+        List<ByteBuffer> records = new ArrayList<>(entries.size());
+        List<RecordLocation> locations = new ArrayList<>(entries.size());
+        long position = fileBytes;
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            ByteBuffer record = encode(PUT, entry.getKey(), entry.getValue());
+            keys.add(entry.getKey());
+            records.add(record);
+            locations.add(new RecordLocation(position, record.remaining()));
+            position += record.remaining();
+        }
+        write(records);
+        for (int i = 0; i < keys.size(); i++) {
+            apply(PUT, keys.get(i), locations.get(i));
+        }
+        checkpointIfNeeded();
+    }
+
+    /**
+     * @return true if the key was stored, false if it already had a value
+     */
+    public synchronized boolean putIfAbsent(String key, String value) {
+        if (index.containsKey(key)) {
+            return false;
+        }
+        put(key, value);
+        return true;
+    }
+
+    public synchronized void delete(String key) {
+        if (!index.containsKey(key)) {
+            return;
+        }
+        write(List.of(encode(DELETE, key, "")));
+        apply(DELETE, key, null);
+        checkpointIfNeeded();
+    }
+
+    /**
+     * Rewrites the file so that it holds only the live records. The records are copied as they are, without decoding
+     * them, and reads wait until the new file replaces the old one.
+     */
+    public synchronized void checkpoint() {
+        Path tempFile = tempFile();
+        fileLock.writeLock().lock();
+        try {
+            Map<String, RecordLocation> movedLocations = new TreeMap<>();
+            long position = 0;
+            try (FileChannel tempChannel = FileChannel.open(tempFile, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                for (Map.Entry<String, RecordLocation> entry : index.entrySet()) {
+                    ByteBuffer record = readRecord(entry.getValue());
+                    movedLocations.put(entry.getKey(), new RecordLocation(position, entry.getValue().size()));
+                    while (record.hasRemaining()) {
+                        position += tempChannel.write(record);
+                    }
+                }
+                tempChannel.force(true);
+            }
+            channel.close();
+            try {
+                Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                index.putAll(movedLocations);
+            } finally {
+                channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                fileBytes = channel.size();
+                channel.position(fileBytes);
+            }
+            liveBytes = fileBytes;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to checkpoint storage file " + file, e);
+        } finally {
+            fileLock.writeLock().unlock();
+        }
+    }
+
+    public synchronized long getFileBytes() {
+        return fileBytes;
+    }
+
+    @Override
+    public synchronized void close() {
+        fileLock.writeLock().lock();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to close storage file " + file, e);
+        } finally {
+            fileLock.writeLock().unlock();
+        }
+    }
+
+    private void recover() throws IOException {
+        long validBytes = 0;
+        InputStream channelStream = Channels.newInputStream(channel);
+        DataInputStream input = new DataInputStream(new BufferedInputStream(channelStream, READ_BUFFER_SIZE));
+        long size = channel.size();
+        while (validBytes + RECORD_HEADER_SIZE <= size) {
+            int bodyLength;
+            int checksum;
+            byte[] body;
+            try {
+                bodyLength = input.readInt();
+                checksum = input.readInt();
+                if (bodyLength <= 0 || bodyLength > size - validBytes - RECORD_HEADER_SIZE) {
+                    break;
+                }
+                body = new byte[bodyLength];
+                input.readFully(body);
+            } catch (EOFException e) {
+                break;
+            }
+            if (crc(body) != checksum) {
+                break;
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(body);
+            byte operation = buffer.get();
+            apply(operation, getString(buffer), new RecordLocation(validBytes, RECORD_HEADER_SIZE + bodyLength));
+            validBytes += RECORD_HEADER_SIZE + bodyLength;
+        }
+        if (validBytes < size) {
+            System.out.println("Cutting off " + (size - validBytes) + " bytes of a torn record from " + file);
+            channel.truncate(validBytes);
+        }
+        fileBytes = validBytes;
+        channel.position(validBytes);
+    }
+
+    private void apply(byte operation, String key, RecordLocation location) {
+        RecordLocation previous = operation == PUT ? index.put(key, location) : index.remove(key);
+        if (previous != null) {
+            liveBytes -= previous.size();
+        }
+        if (operation == PUT) {
+            liveBytes += location.size();
+        }
+    }
+
+    private String readValue(RecordLocation location) {
+        ByteBuffer record = readRecord(location);
+        record.position(RECORD_HEADER_SIZE + 1);
+        record.position(record.position() + Integer.BYTES + record.getInt(record.position()));
+        return getString(record);
+    }
+
+    private ByteBuffer readRecord(RecordLocation location) {
+        ByteBuffer record = ByteBuffer.allocate(location.size());
+        try {
+            while (record.hasRemaining()) {
+                if (channel.read(record, location.offset() + record.position()) < 0) {
+                    throw new EOFException("The record at " + location.offset() + " ends after the end of the file");
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read from storage file " + file, e);
+        }
+        return record.flip();
+    }
+
+    /**
+     * Appends the records and forces them to disk. A failed write is cut off again, so that the records appended
+     * after it are not hidden behind a torn record on recovery.
+     */
+    private void write(List<ByteBuffer> records) {
+        long start = fileBytes;
+        long startNanos = System.nanoTime();
+        try {
+            for (ByteBuffer record : records) {
+                while (record.hasRemaining()) {
+                    fileBytes += channel.write(record);
+                }
+            }
+            channel.force(false);
+            writeLatency.record(System.nanoTime() - startNanos);
+        } catch (IOException e) {
+            rollBack(start);
+            throw new UncheckedIOException("Unable to write to storage file " + file, e);
+        }
+    }
+
+    private void rollBack(long start) {
+        try {
+            channel.truncate(start);
+            channel.position(start);
+            fileBytes = start;
+        } catch (IOException e) {
+            System.out.println("Unable to cut off a failed write from storage file " + file + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Checkpoints after a write that is already durable, so a failed checkpoint is only logged and retried on a later
+     * write instead of failing that write.
+     */
+    private void checkpointIfNeeded() {
+        if (fileBytes >= checkpointMinBytes && fileBytes > 2 * liveBytes) {
+            try {
+                checkpoint();
+            } catch (UncheckedIOException e) {
+                System.out.println(e.getMessage() + ": " + e.getCause().getMessage());
+            }
+        }
+    }
+
+    private Path tempFile() {
+        return file.resolveSibling(file.getFileName() + TEMP_FILE_EXTENSION);
+    }
+
+    private static ByteBuffer encode(byte operation, String key, String value) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        byte[] valueBytes = value.getBytes(StandardCharsets.UTF_8);
+        int bodyLength = 1 + Integer.BYTES + keyBytes.length + Integer.BYTES + valueBytes.length;
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + bodyLength);
+        record.putInt(bodyLength).putInt(0)
+            .put(operation)
+            .putInt(keyBytes.length).put(keyBytes)
+            .putInt(valueBytes.length).put(valueBytes);
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), RECORD_HEADER_SIZE, bodyLength);
+        record.putInt(Integer.BYTES, (int) crc.getValue());
+        return record.flip();
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int crc(byte[] body) {
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        return (int) crc.getValue();
+    }
+
+    private record RecordLocation(long offset, int size) {
+    }
+}
@@ -0,0 +1,168 @@
+package bg.sofia.uni.fmi.mjt.spotify.streaming;
+
+import bg.sofia.uni.fmi.mjt.spotify.song.Song;
+
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.File;
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Keeps the audio data of hot songs in off-heap buffers shared by all of their listeners. The cache is bounded by
+ * the total size of the audio data. When it is full, the songs with the fewest plays are evicted first, and songs
+ * with equal plays are evicted least recently used first.
+ *
+ * <p>A song is loaded once, even when many listeners start it at the same time: the first of them loads it and the
+ * rest wait for that load. The file is read outside of any lock of the cache.</p>
+ */
+public class AudioCache {
+    public static final long DEFAULT_CAPACITY_BYTES = 256L * 1024 * 1024;
+    private static final String MUSIC_PATH = "resources\\music\\";
+    private static final String AUDIO_FILE_EXTENSION = ".wav";
+
+    private final long capacityBytes;
+    private final Function<Song, File> songFiles;
+    private final Map<Song, CachedSong> cachedSongs;
+    private final AtomicLong residentBytes;
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+    private final AtomicLong accessClock;
+
+    public AudioCache() {
+        this(DEFAULT_CAPACITY_BYTES);
+    }
+
+    public AudioCache(long capacityBytes) {
+        this(capacityBytes, AudioCache::getSongFile);
+    }
+
+    /**
+     * @param songFiles maps a song to its audio file
+     */
+    public AudioCache(long capacityBytes, Function<Song, File> songFiles) {
+        this.capacityBytes = capacityBytes;
+        this.songFiles = songFiles;
+        this.cachedSongs = new ConcurrentHashMap<>();
+        this.residentBytes = new AtomicLong();
+        this.hits = new AtomicLong();
+        this.misses = new AtomicLong();
+        this.accessClock = new AtomicLong();
+    }
+
+    public static File getSongFile(Song song) {
+        return new File(MUSIC_PATH + song.getName().replaceAll("\\s", "") + "By" +
+            song.getSingerName().replaceAll("\\s", "") + AUDIO_FILE_EXTENSION);
+    }
+
+    /**
+     * Opens a new read cursor over the audio of the song, loading it into the cache on a miss. A listener that
+     * finds the song being loaded waits for the load, and reads the file directly if the load fails.
+     */
+    public AudioSource open(Song song) throws IOException, UnsupportedAudioFileException {
+        CachedSong cachedSong = cachedSongs.get(song);
+        if (cachedSong == null) {
+            File songFile = songFiles.apply(song);
+            if (songFile.length() > capacityBytes) {
+                misses.incrementAndGet();
+                return AudioSource.open(songFile);
+            }
+            CachedSong loading = new CachedSong(song, accessClock.incrementAndGet());
+            cachedSong = cachedSongs.putIfAbsent(song, loading);
+            if (cachedSong == null) {
+                misses.incrementAndGet();
+                return load(loading, songFile);
+            }
+        }
+
+        hits.incrementAndGet();
+        cachedSong.lastAccess = accessClock.incrementAndGet();
+        try {
+            return new WavAudioSource(cachedSong.wavFile.join());
+        } catch (CompletionException | CancellationException e) {
+            return AudioSource.open(songFiles.apply(song));
+        }
+    }
+
+    public long getHitsCount() {
+        return hits.get();
+    }
+
+    public long getMissesCount() {
+        return misses.get();
+    }
+
+    public double getHitRatio() {
+        long hitsCount = hits.get();
+        long total = hitsCount + misses.get();
+        return total == 0 ? 0 : (double) hitsCount / total;
+    }
+
+    public long getResidentBytes() {
+        return residentBytes.get();
+    }
+
+    public int getCachedSongsCount() {
+        return cachedSongs.size();
+    }
+
+    boolean isCached(Song song) {
+        return cachedSongs.containsKey(song);
+    }
+
+    private AudioSource load(CachedSong loading, File songFile) throws IOException, UnsupportedAudioFileException {
+        WavFile wavFile;
+        try {
+            wavFile = WavFile.load(songFile.toPath());
+        } catch (IOException | UnsupportedAudioFileException | RuntimeException e) {
+            cachedSongs.remove(loading.song, loading);
+            loading.wavFile.completeExceptionally(e);
+            if (e instanceof UnsupportedAudioFileException) {
+                return AudioSource.open(songFile);
+            }
+            throw e;
+        }
+        residentBytes.addAndGet(wavFile.getSize());
+        loading.wavFile.complete(wavFile);
+        evictIfNeeded(loading.song);
+        return new WavAudioSource(wavFile);
+    }
+
+    private synchronized void evictIfNeeded(Song justLoaded) {
+        while (residentBytes.get() > capacityBytes) {
+            CachedSong victim = cachedSongs.values().stream()
+                .filter(cachedSong -> !cachedSong.song.equals(justLoaded) && cachedSong.isLoaded())
+                .min(Comparator.comparingLong((CachedSong cachedSong) -> cachedSong.song.getPlayingTimes())
+                    .thenComparingLong(cachedSong -> cachedSong.lastAccess))
+                .orElse(null);
+            if (victim == null) {
+                return;
+            }
+            if (cachedSongs.remove(victim.song, victim)) {
+                residentBytes.addAndGet(-victim.wavFile.join().getSize());
+            }
+        }
+    }
+
+    private static class CachedSong {
+        private final Song song;
+        private final CompletableFuture<WavFile> wavFile;
+        private volatile long lastAccess;
+
+        CachedSong(Song song, long lastAccess) {
+            this.song = song;
+            this.wavFile = new CompletableFuture<>();
+            this.lastAccess = lastAccess;
+        }
+
+        boolean isLoaded() {
+            return wavFile.isDone() && !wavFile.isCompletedExceptionally();
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package bg.sofia.uni.fmi.mjt.spotify.streaming;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+public interface AudioSource extends AutoCloseable {
+    /**
+     * Opens a song file. PCM WAV files are memory-mapped and sent without copying, anything else
+     * is decoded through {@link AudioSystem}.
+     */
+    static AudioSource open(File songFile) throws IOException, UnsupportedAudioFileException {
+        try {
+            return new WavAudioSource(WavFile.open(songFile.toPath()));
+        } catch (UnsupportedAudioFileException e) {
+            return new DecodedAudioSource(AudioSystem.getAudioInputStream(songFile));
+        }
+    }
+
+    AudioFormat getFormat();
+
+    /**
+     * Reads the next bytes of audio.
+     *
+     * @param maxBytes the maximum number of bytes that should be returned
+     * @return a buffer in read mode with at most maxBytes bytes, empty when the end of the audio is reached
+     */
+    ByteBuffer read(int maxBytes) throws IOException;
+
+    @Override
+    void close() throws IOException;
+}
@@ -0,0 +1,149 @@
+package bg.sofia.uni.fmi.mjt.spotify.streaming;
+
+import bg.sofia.uni.fmi.mjt.spotify.protocol.Frame;
+import bg.sofia.uni.fmi.mjt.spotify.protocol.FrameSink;
+import bg.sofia.uni.fmi.mjt.spotify.protocol.FrameType;
+import bg.sofia.uni.fmi.mjt.spotify.song.SerializableAudioFormat;
+import bg.sofia.uni.fmi.mjt.spotify.song.Song;
+import com.google.gson.Gson;
+
+import javax.sound.sampled.AudioFormat;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.function.LongSupplier;
+
+/**
+ * One song being streamed to one client. It has no thread of its own - the {@link StreamingScheduler} calls
+ * {@link #tick()} periodically. The stream is paced by the playback rate of the song: at any moment it has sent
+ * what the client has played so far plus a lead buffer of {@code leadMillis} worth of audio.
+ */
+public class AudioStream {
+    private static final Gson GSON = new Gson();
+    private static final int MAX_CHUNK_SIZE = 16 * 1024;
+    private static final double DEFAULT_BYTES_PER_SECOND = 176_400;
+    private static final double NANOS_IN_SECOND = 1_000_000_000.0;
+    private static final long NANOS_IN_MILLI = 1_000_000;
+    private static final double MILLIS_IN_SECOND = 1000.0;
+
+    private final Song song;
+    private final FrameSink clientSink;
+    private final AudioSource audioSource;
+    private final int frameSize;
+    private final double bytesPerSecond;
+    private final long leadBytes;
+    private final int maxChunkSize;
+    private final LongSupplier nanoClock;
+    private volatile boolean isStopped;
+    private volatile long bytesSent;
+    private volatile long startNanos;
+    private boolean isFinished;
+
+    public AudioStream(FrameSink clientSink, Song song, AudioSource audioSource, long leadMillis) throws IOException {
+        this(clientSink, song, audioSource, leadMillis, System::nanoTime);
+    }
+
+    /**
+     * @param nanoClock the time in nanoseconds that paces the stream, never 0
+     */
+    AudioStream(FrameSink clientSink, Song song, AudioSource audioSource, long leadMillis, LongSupplier nanoClock)
+        throws IOException {
+        this.song = song;
+        this.nanoClock = nanoClock;
+        this.clientSink = clientSink;
+        this.audioSource = audioSource;
+        AudioFormat audioFormat = audioSource.getFormat();
+        this.frameSize = Math.max(1, audioFormat.getFrameSize());
+        this.bytesPerSecond = getBytesPerSecond(audioFormat);
+        this.leadBytes = (long) (bytesPerSecond * leadMillis / MILLIS_IN_SECOND);
+        this.maxChunkSize = Math.max(frameSize, MAX_CHUNK_SIZE - MAX_CHUNK_SIZE % frameSize);
+        try {
+            clientSink.send(Frame.of(FrameType.AUDIO_FORMAT, GSON.toJson(new SerializableAudioFormat(audioFormat))));
+        } catch (IOException e) {
+            audioSource.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Sends the audio that is due by now unless the client is still busy with the previous chunks.
+     *
+     * @return false once the stream is over and should not be ticked anymore
+     */
+    public boolean tick() {
+        if (isFinished) {
+            return false;
+        }
+        if (isStopped) {
+            finish();
+            return false;
+        }
+        long now = nanoClock.getAsLong();
+        if (startNanos == 0) {
+            startNanos = now;
+        }
+        long dueBytes = leadBytes + (long) (bytesPerSecond * (now - startNanos) / NANOS_IN_SECOND);
+        try {
+            while (bytesSent < dueBytes && !clientSink.isCongested()) {
+                long allowed = Math.min(maxChunkSize, dueBytes - bytesSent);
+                int toRead = (int) Math.max(frameSize, allowed - allowed % frameSize);
+                ByteBuffer chunk = audioSource.read(toRead);
+                int readBytes = chunk.remaining();
+                if (readBytes > 0) {
+                    clientSink.send(FrameType.AUDIO_CHUNK, chunk);
+                    bytesSent += readBytes;
+                }
+                if (readBytes < toRead) {
+                    finish();
+                    return false;
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            System.out.println("Unable to stream audio " + e.getMessage());
+            close();
+            return false;
+        }
+    }
+
+    public void stop() {
+        isStopped = true;
+    }
+
+    public boolean isFinished() {
+        return isFinished;
+    }
+
+    public AudioStreamStats getStats() {
+        long elapsedNanos = startNanos == 0 ? 0 : nanoClock.getAsLong() - startNanos;
+        long sent = bytesSent;
+        double actualBytesPerSecond = elapsedNanos == 0 ? 0 :
+            Math.max(0, sent - leadBytes) * NANOS_IN_SECOND / elapsedNanos;
+        return new AudioStreamStats(song.toString(), bytesPerSecond, actualBytesPerSecond, sent,
+            elapsedNanos / NANOS_IN_MILLI);
+    }
+
+    private void finish() {
+        try {
+            clientSink.send(Frame.empty(FrameType.AUDIO_END));
+        } catch (IOException e) {
+            System.out.println("Unable to end audio stream " + e.getMessage());
+        }
+        close();
+    }
+
+    private void close() {
+        isFinished = true;
+        try {
+            audioSource.close();
+        } catch (IOException e) {
+            System.out.println("Unable to close audio file " + e.getMessage());
+        }
+    }
+
+    private static double getBytesPerSecond(AudioFormat audioFormat) {
+        if (audioFormat.getFrameSize() <= 0 || audioFormat.getFrameRate() <= 0) {
+            return DEFAULT_BYTES_PER_SECOND;
+        }
+        return (double) audioFormat.getFrameRate() * audioFormat.getFrameSize();
+    }
+}
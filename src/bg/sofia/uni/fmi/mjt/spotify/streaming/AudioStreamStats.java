@@ -0,0 +1,19 @@
+package bg.sofia.uni.fmi.mjt.spotify.streaming;
+
+/**
+ * Snapshot of how fast a stream is being sent compared to how fast it plays.
+ *
+ * @param targetBytesPerSecond the real playback rate of the song - frame rate times frame size
+ * @param actualBytesPerSecond the bytes sent so far, without the lead buffer, divided by the elapsed time
+ */
+public record AudioStreamStats(String song, double targetBytesPerSecond, double actualBytesPerSecond,
+                               long bytesSent, long elapsedMillis) {
+    private static final int PERCENT = 100;
+
+    /**
+     * @return how fast the stream is sent as a percentage of how fast it plays
+     */
+    public long getSendRatePercent() {
+        return targetBytesPerSecond == 0 ? 0 : Math.round(actualBytesPerSecond * PERCENT / targetBytesPerSecond);
+    }
+}
@@ -0,0 +1,29 @@
+package bg.sofia.uni.fmi.mjt.spotify.streaming;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+public class DecodedAudioSource implements AudioSource {
+    private final AudioInputStream audioInputStream;
+
+    public DecodedAudioSource(AudioInputStream audioInputStream) {
+        this.audioInputStream = audioInputStream;
+    }
+
+    @Override
+    public AudioFormat getFormat() {
+        return audioInputStream.getFormat();
+    }
+
+    @Override
+    public ByteBuffer read(int maxBytes) throws IOException {
+        return ByteBuffer.wrap(audioInputStream.readNBytes(maxBytes));
+    }
+
+    @Override
+    public void close() throws IOException {
+        audioInputStream.close();
+    }
+}
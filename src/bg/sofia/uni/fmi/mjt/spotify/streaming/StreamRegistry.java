@@ -0,0 +1,126 @@
+package bg.sofia.uni.fmi.mjt.spotify.streaming;
+
+import bg.sofia.uni.fmi.mjt.spotify.exception.StreamLimitExceededException;
+import bg.sofia.uni.fmi.mjt.spotify.protocol.FrameSink;
+import bg.sofia.uni.fmi.mjt.spotify.song.Song;
+
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The audio streams of the clients, found in constant time by the connection they are sent to. A connection plays
+ * at most one stream, so playing a song replaces the stream the connection was playing, and a user may play on a
+ * limited number of connections at the same time.
+ */
+public class StreamRegistry {
+    public static final int DEFAULT_MAX_STREAMS_PER_USER = 3;
+
+    private final StreamingScheduler streamingScheduler;
+    private final int maxStreamsPerUser;
+    private final Map<FrameSink, AudioStream> streamsByConnection;
+    private final Map<String, Set<FrameSink>> connectionsByUser;
+    private final Map<FrameSink, String> usersByConnection;
+
+    public StreamRegistry(StreamingScheduler streamingScheduler) {
+        this(streamingScheduler, DEFAULT_MAX_STREAMS_PER_USER);
+    }
+
+    public StreamRegistry(StreamingScheduler streamingScheduler, int maxStreamsPerUser) {
+        this.streamingScheduler = streamingScheduler;
+        this.maxStreamsPerUser = maxStreamsPerUser;
+        this.streamsByConnection = new ConcurrentHashMap<>();
+        this.connectionsByUser = new ConcurrentHashMap<>();
+        this.usersByConnection = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Stops the stream of the connection and starts streaming the song to it instead. Plays of the same user run
+     * one at a time, so concurrent plays cannot exceed the limit together.
+     *
+     * @throws StreamLimitExceededException if the user already plays on the maximum number of other connections
+     */
+    public AudioStream play(FrameSink connection, String user, Song song)
+        throws StreamLimitExceededException, IOException, UnsupportedAudioFileException {
+        stop(connection);
+        while (true) {
+            Set<FrameSink> userConnections =
+                connectionsByUser.computeIfAbsent(user, key -> ConcurrentHashMap.newKeySet());
+            synchronized (userConnections) {
+                if (connectionsByUser.get(user) != userConnections) {
+                    continue;
+                }
+                try {
+                    userConnections.removeIf(userConnection -> !isPlaying(userConnection));
+                    if (userConnections.size() >= maxStreamsPerUser) {
+                        throw new StreamLimitExceededException("Unable to play song because you are already " +
+                            "streaming on " + maxStreamsPerUser + " connections. " +
+                            "Please stop one of them and try again");
+                    }
+                    AudioStream audioStream = streamingScheduler.play(connection, song);
+                    streamsByConnection.put(connection, audioStream);
+                    usersByConnection.put(connection, user);
+                    userConnections.add(connection);
+                    return audioStream;
+                } finally {
+                    dropIfEmpty(user, userConnections);
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops the stream of the connection, if it plays one, and forgets the connection, so the users who played are
+     * not kept once their connections are closed.
+     */
+    public void stop(FrameSink connection) {
+        AudioStream audioStream = streamsByConnection.remove(connection);
+        if (audioStream != null) {
+            audioStream.stop();
+        }
+        String user = usersByConnection.remove(connection);
+        if (user == null) {
+            return;
+        }
+        Set<FrameSink> userConnections = connectionsByUser.get(user);
+        if (userConnections != null) {
+            synchronized (userConnections) {
+                userConnections.remove(connection);
+                dropIfEmpty(user, userConnections);
+            }
+        }
+    }
+
+    public int getActiveStreamsCount(String user) {
+        Set<FrameSink> userConnections = connectionsByUser.get(user);
+        if (userConnections == null) {
+            return 0;
+        }
+        return (int) userConnections.stream().filter(this::isPlaying).count();
+    }
+
+    int getUsersCount() {
+        return connectionsByUser.size();
+    }
+
+    /**
+     * Removes the set of the user once it is empty. The set is locked, so a play that already holds it finds out it
+     * was replaced and starts over with a new one.
+     */
+    private void dropIfEmpty(String user, Set<FrameSink> userConnections) {
+        if (userConnections.isEmpty()) {
+            connectionsByUser.remove(user, userConnections);
+        }
+    }
+
+    private boolean isPlaying(FrameSink connection) {
+        AudioStream audioStream = streamsByConnection.get(connection);
+        if (audioStream != null && audioStream.isFinished()) {
+            streamsByConnection.remove(connection, audioStream);
+            return false;
+        }
+        return audioStream != null;
+    }
+}
@@ -0,0 +1,160 @@
+package bg.sofia.uni.fmi.mjt.spotify.streaming;
+
+import bg.sofia.uni.fmi.mjt.spotify.metrics.LatencyHistogram;
+import bg.sofia.uni.fmi.mjt.spotify.metrics.MetricsRegistry;
+import bg.sofia.uni.fmi.mjt.spotify.protocol.FrameSink;
+import bg.sofia.uni.fmi.mjt.spotify.song.Song;
+
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Drives all active audio streams from a fixed number of threads. Streams are spread over shards and every
+ * shard ticks all of its streams once per tick period, so the thread count does not grow with the listeners.
+ */
+public class StreamingScheduler {
+    public static final long TICK_MILLIS = 20;
+    public static final long DEFAULT_LEAD_MILLIS = 2000;
+    public static final long LAGGING_SEND_RATE_PERCENT = 95;
+    private static final long MIN_MEASURED_MILLIS = 1000;
+    private static final long FULL_SEND_RATE_PERCENT = 100;
+    private static final int PERCENT = 100;
+    private static final int DEFAULT_THREADS_COUNT = 2;
+    private static final String THREAD_NAME = "spotify-streaming-";
+
+    private final ScheduledExecutorService scheduler;
+    private final List<Set<AudioStream>> shards;
+    private final AtomicInteger nextShardIndex;
+    private final long leadMillis;
+    private final AudioCache audioCache;
+    private final LatencyHistogram tickLatency;
+
+    public StreamingScheduler() {
+        this(DEFAULT_THREADS_COUNT, DEFAULT_LEAD_MILLIS, new AudioCache());
+    }
+
+    /**
+     * @param leadMillis how much audio, in milliseconds of playback, every stream is allowed to send ahead
+     */
+    public StreamingScheduler(int threadsCount, long leadMillis, AudioCache audioCache) {
+        if (threadsCount <= 0) {
+            throw new IllegalArgumentException("The streaming scheduler needs at least one thread but was " +
+                threadsCount);
+        }
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.scheduler = new ScheduledThreadPoolExecutor(threadsCount, runnable -> {
+            Thread thread = new Thread(runnable, THREAD_NAME + threadIndex.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.shards = new ArrayList<>(threadsCount);
+        this.nextShardIndex = new AtomicInteger();
+        this.leadMillis = leadMillis;
+        this.audioCache = audioCache;
+        this.tickLatency = MetricsRegistry.getDefault().histogram("streaming.tick");
+        for (int i = 0; i < threadsCount; i++) {
+            Set<AudioStream> shard = ConcurrentHashMap.newKeySet();
+            shards.add(shard);
+            scheduler.scheduleAtFixedRate(() -> tickShard(shard), TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Opens the song and starts streaming it to the client on the next tick.
+     */
+    public AudioStream play(FrameSink clientSink, Song song) throws IOException, UnsupportedAudioFileException {
+        return schedule(new AudioStream(clientSink, song, audioCache.open(song), leadMillis));
+    }
+
+    /**
+     * Adds the stream to the next shard in turn, so the streams are spread evenly over the threads.
+     */
+    AudioStream schedule(AudioStream audioStream) {
+        int shardIndex = Math.floorMod(nextShardIndex.getAndIncrement(), shards.size());
+        shards.get(shardIndex).add(audioStream);
+        return audioStream;
+    }
+
+    public int getActiveStreamsCount() {
+        return shards.stream().mapToInt(Set::size).sum();
+    }
+
+    List<Integer> getShardSizes() {
+        return shards.stream().map(Set::size).toList();
+    }
+
+    public List<AudioStreamStats> getStreamStats() {
+        return shards.stream()
+            .flatMap(Set::stream)
+            .map(AudioStream::getStats)
+            .toList();
+    }
+
+    /**
+     * @return the send rate of the slowest stream as a percentage of its playback rate, or 100 when no stream has
+     *     been sent long enough to be measured
+     */
+    public long getSlowestSendRatePercent() {
+        return getMeasuredStreamStats().stream()
+            .mapToLong(AudioStreamStats::getSendRatePercent)
+            .min()
+            .orElse(FULL_SEND_RATE_PERCENT);
+    }
+
+    /**
+     * @return how many streams are sent slower than {@link #LAGGING_SEND_RATE_PERCENT} percent of their playback rate
+     */
+    public long getLaggingStreamsCount() {
+        return getMeasuredStreamStats().stream()
+            .filter(stats -> stats.getSendRatePercent() < LAGGING_SEND_RATE_PERCENT)
+            .count();
+    }
+
+    public void registerGauges(MetricsRegistry metrics) {
+        metrics.gauge("streaming.active-streams", this::getActiveStreamsCount);
+        metrics.gauge("streaming.send-rate.slowest-percent", this::getSlowestSendRatePercent);
+        metrics.gauge("streaming.send-rate.lagging-streams", this::getLaggingStreamsCount);
+        metrics.gauge("streaming.audio-cache.songs", audioCache::getCachedSongsCount);
+        metrics.gauge("streaming.audio-cache.resident-bytes", audioCache::getResidentBytes);
+        metrics.gauge("streaming.audio-cache.hits", audioCache::getHitsCount);
+        metrics.gauge("streaming.audio-cache.misses", audioCache::getMissesCount);
+        metrics.gauge("streaming.audio-cache.hit-ratio-percent", () -> Math.round(audioCache.getHitRatio() * PERCENT));
+    }
+
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Skips the streams that have just started, whose rate is measured over too short a time to mean anything.
+     */
+    private List<AudioStreamStats> getMeasuredStreamStats() {
+        return getStreamStats().stream()
+            .filter(stats -> stats.elapsedMillis() >= MIN_MEASURED_MILLIS)
+            .toList();
+    }
+
+    private void tickShard(Set<AudioStream> shard) {
+        long startNanos = System.nanoTime();
+        for (AudioStream audioStream : shard) {
+            try {
+                if (!audioStream.tick()) {
+                    shard.remove(audioStream);
+                }
+            } catch (RuntimeException e) {
+                System.out.println("Audio stream failed and was removed " + e.getMessage());
+                audioStream.stop();
+                shard.remove(audioStream);
+            }
+        }
+        tickLatency.record(System.nanoTime() - startNanos);
+    }
+}
@@ -0,0 +1,36 @@
+package bg.sofia.uni.fmi.mjt.spotify.streaming;
+
+import javax.sound.sampled.AudioFormat;
+import java.nio.ByteBuffer;
+
+/**
+ * A read cursor over the data of a {@link WavFile}. Every read returns a slice of the shared data buffer, so
+ * no audio bytes are copied on the way to the socket.
+ */
+public class WavAudioSource implements AudioSource {
+    private final WavFile wavFile;
+    private final ByteBuffer data;
+
+    public WavAudioSource(WavFile wavFile) {
+        this.wavFile = wavFile;
+        this.data = wavFile.getData();
+    }
+
+    @Override
+    public AudioFormat getFormat() {
+        return wavFile.getFormat();
+    }
+
+    @Override
+    public ByteBuffer read(int maxBytes) {
+        int length = Math.min(maxBytes, data.remaining());
+        ByteBuffer chunk = data.slice(data.position(), length);
+        data.position(data.position() + length);
+        return chunk;
+    }
+
+    @Override
+    public void close() {
+        data.position(data.limit());
+    }
+}
@@ -0,0 +1,154 @@
+package bg.sofia.uni.fmi.mjt.spotify.streaming;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A PCM WAV file whose header is parsed once and whose data chunk is either memory-mapped or loaded into a direct
+ * buffer. The samples in the data chunk are already in the format the client plays, so they can be sent as they are.
+ */
+public class WavFile {
+    private static final String RIFF = "RIFF";
+    private static final String WAVE = "WAVE";
+    private static final String FORMAT_CHUNK = "fmt ";
+    private static final String DATA_CHUNK = "data";
+    private static final int RIFF_HEADER_SIZE = 12;
+    private static final int CHUNK_HEADER_SIZE = 8;
+    private static final int MIN_FORMAT_CHUNK_SIZE = 16;
+    private static final int MAX_FORMAT_CHUNK_SIZE = 40;
+    private static final int EXTENSIBLE_SUB_FORMAT_OFFSET = 24;
+    private static final int FORMAT_PCM = 1;
+    private static final int FORMAT_EXTENSIBLE = 0xFFFE;
+    private static final int BITS_IN_BYTE = 8;
+
+    private final AudioFormat format;
+    private final ByteBuffer data;
+
+    private WavFile(AudioFormat format, ByteBuffer data) {
+        this.format = format;
+        this.data = data;
+    }
+
+    /**
+     * Maps the data chunk of the file.
+     *
+     * @throws UnsupportedAudioFileException if the file is not a PCM WAV file
+     */
+    public static WavFile open(Path path) throws IOException, UnsupportedAudioFileException {
+        return open(path, false);
+    }
+
+    /**
+     * Reads the whole data chunk of the file into an off-heap buffer.
+     *
+     * @throws UnsupportedAudioFileException if the file is not a PCM WAV file
+     */
+    public static WavFile load(Path path) throws IOException, UnsupportedAudioFileException {
+        return open(path, true);
+    }
+
+    private static WavFile open(Path path, boolean isLoaded) throws IOException, UnsupportedAudioFileException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer riffHeader = readAt(channel, 0, RIFF_HEADER_SIZE);
+            if (!RIFF.equals(readId(riffHeader, 0)) || !WAVE.equals(readId(riffHeader, CHUNK_HEADER_SIZE))) {
+                throw new UnsupportedAudioFileException("Not a WAV file " + path);
+            }
+
+            AudioFormat format = null;
+            long position = RIFF_HEADER_SIZE;
+            while (position + CHUNK_HEADER_SIZE <= channel.size()) {
+                ByteBuffer chunkHeader = readAt(channel, position, CHUNK_HEADER_SIZE);
+                String chunkId = readId(chunkHeader, 0);
+                long chunkSize = Integer.toUnsignedLong(chunkHeader.getInt(Integer.BYTES));
+                long chunkStart = position + CHUNK_HEADER_SIZE;
+                if (FORMAT_CHUNK.equals(chunkId)) {
+                    int formatSize = (int) Math.min(chunkSize, MAX_FORMAT_CHUNK_SIZE);
+                    format = parseFormat(readAt(channel, chunkStart, formatSize), path);
+                } else if (DATA_CHUNK.equals(chunkId)) {
+                    if (format == null) {
+                        throw new UnsupportedAudioFileException("Data chunk before format chunk in " + path);
+                    }
+                    long dataSize = Math.min(chunkSize, channel.size() - chunkStart);
+                    dataSize -= dataSize % format.getFrameSize();
+                    ByteBuffer data = isLoaded ? readDirect(channel, chunkStart, (int) dataSize)
+                        : channel.map(FileChannel.MapMode.READ_ONLY, chunkStart, dataSize);
+                    return new WavFile(format, data.asReadOnlyBuffer());
+                }
+                position = chunkStart + chunkSize + (chunkSize & 1);
+            }
+            throw new UnsupportedAudioFileException("No data chunk in " + path);
+        }
+    }
+
+    public AudioFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * @return an independent read-only view of the audio data, positioned at its beginning
+     */
+    public ByteBuffer getData() {
+        return data.duplicate();
+    }
+
+    public int getSize() {
+        return data.capacity();
+    }
+
+    private static AudioFormat parseFormat(ByteBuffer formatChunk, Path path) throws UnsupportedAudioFileException {
+        if (formatChunk.limit() < MIN_FORMAT_CHUNK_SIZE) {
+            throw new UnsupportedAudioFileException("Truncated format chunk in " + path);
+        }
+        int formatTag = Short.toUnsignedInt(formatChunk.getShort(0));
+        if (formatTag == FORMAT_EXTENSIBLE && formatChunk.limit() >= EXTENSIBLE_SUB_FORMAT_OFFSET + Short.BYTES) {
+            formatTag = Short.toUnsignedInt(formatChunk.getShort(EXTENSIBLE_SUB_FORMAT_OFFSET));
+        }
+        if (formatTag != FORMAT_PCM) {
+            throw new UnsupportedAudioFileException("Only PCM WAV files can be mapped but " + path +
+                " has format " + formatTag);
+        }
+        int channels = Short.toUnsignedInt(formatChunk.getShort(2));
+        int sampleRate = formatChunk.getInt(4);
+        int frameSize = Short.toUnsignedInt(formatChunk.getShort(12));
+        int sampleSizeInBits = Short.toUnsignedInt(formatChunk.getShort(14));
+        if (channels == 0 || sampleRate <= 0 || frameSize == 0) {
+            throw new UnsupportedAudioFileException("Invalid format chunk in " + path);
+        }
+        AudioFormat.Encoding encoding = sampleSizeInBits > BITS_IN_BYTE
+            ? AudioFormat.Encoding.PCM_SIGNED : AudioFormat.Encoding.PCM_UNSIGNED;
+        return new AudioFormat(encoding, sampleRate, sampleSizeInBits, channels, frameSize, sampleRate, false);
+    }
+
+    private static ByteBuffer readAt(FileChannel channel, long position, int size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of WAV file");
+            }
+        }
+        return buffer.flip();
+    }
+
+    private static ByteBuffer readDirect(FileChannel channel, long position, int size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(size);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of WAV file");
+            }
+        }
+        return buffer.flip();
+    }
+
+    private static String readId(ByteBuffer buffer, int offset) {
+        byte[] id = new byte[Integer.BYTES];
+        buffer.get(offset, id);
+        return new String(id, StandardCharsets.US_ASCII);
+    }
+}
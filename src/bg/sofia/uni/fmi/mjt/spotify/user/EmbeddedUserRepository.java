@@ -0,0 +1,58 @@
+package bg.sofia.uni.fmi.mjt.spotify.user;
+
+import bg.sofia.uni.fmi.mjt.spotify.exception.NotFoundUserException;
+import bg.sofia.uni.fmi.mjt.spotify.storage.StorageEngine;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps the users in the embedded storage engine, one key per normalized email with the encrypted password as its
+ * value.
+ */
+public class EmbeddedUserRepository implements UserRepositoryAPI {
+    private static final String USER_PREFIX = "user/";
+
+    private final StorageEngine storageEngine;
+
+    public EmbeddedUserRepository(StorageEngine storageEngine) {
+        this.storageEngine = storageEngine;
+    }
+
+    @Override
+    public void save(String email, String password) {
+        storageEngine.put(userKey(email), password);
+    }
+
+    @Override
+    public boolean saveIfAbsent(String email, String password) {
+        return storageEngine.putIfAbsent(userKey(email), password);
+    }
+
+    @Override
+    public boolean exists(String email) {
+        return storageEngine.get(userKey(email)) != null;
+    }
+
+    @Override
+    public String getUserPassword(String email) throws NotFoundUserException {
+        String password = storageEngine.get(userKey(email));
+        if (password == null) {
+            throw new NotFoundUserException("User with email " + email + " not found");
+        }
+        return password;
+    }
+
+    /**
+     * Copies all the users of the source with a single disk sync.
+     */
+    public void importFrom(UserRepository source) {
+        Map<String, String> entries = new HashMap<>();
+        source.getUsers().forEach(user -> entries.put(userKey(user.email()), user.password()));
+        storageEngine.putAll(entries);
+    }
+
+    private static String userKey(String email) {
+        return USER_PREFIX + UserRepository.normalizeEmail(email);
+    }
+}
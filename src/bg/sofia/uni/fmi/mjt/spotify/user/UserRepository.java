@@ -9,46 +9,78 @@ import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Keeps the users in a text file and indexes them in memory by their normalized email, so that a login looks a user
+ * up in constant time and without locking.
+ */
 public class UserRepository implements UserRepositoryAPI {
-    private static final String USERS_FILE_PATH = "resources\\Users.txt";
+    public static final String USERS_FILE_PATH = "resources\\Users.txt";
     private static final String SPACE = " ";
-    private final Set<User> users;
+    private final Map<String, User> users;
 
     public UserRepository() {
         users = readUsersFromFile();
     }
 
+    /**
+     * Emails are compared ignoring surrounding whitespace and case.
+     */
+    public static String normalizeEmail(String email) {
+        return email.strip().toLowerCase(Locale.ROOT);
+    }
+
     @Override
     public void save(String email, String password) {
-        writeUserToFile(email, password);
-        users.add(new User(email, password));
+        User user = new User(email, password);
+        users.compute(normalizeEmail(email), (key, previous) -> {
+            writeUserToFile(email, password);
+            return user;
+        });
+    }
+
+    /**
+     * The file is written while the email is claimed in the index, so two registrations of the same email can never
+     * both reach the file.
+     */
+    @Override
+    public boolean saveIfAbsent(String email, String password) {
+        User user = new User(email, password);
+        return users.computeIfAbsent(normalizeEmail(email), key -> {
+            writeUserToFile(email, password);
+            return user;
+        }) == user;
     }
 
     @Override
     public boolean exists(String email) {
-        return users.stream()
-            .map(User::email)
-            .anyMatch(userEmail -> userEmail.equals(email));
+        return users.containsKey(normalizeEmail(email));
     }
 
     @Override
     public String getUserPassword(String email) throws NotFoundUserException {
-        return users.stream()
-            .filter(user -> user.email().equals(email))
-            .findFirst().orElseThrow(() -> new NotFoundUserException("User with email " + email + " not found"))
-            .password();
+        User user = users.get(normalizeEmail(email));
+        if (user == null) {
+            throw new NotFoundUserException("User with email " + email + " not found");
+        }
+        return user.password();
+    }
+
+    Set<User> getUsers() {
+        return Set.copyOf(users.values());
     }
 
-    private Set<User> readUsersFromFile() {
-        Set<User> users = new HashSet<>();
+    private Map<String, User> readUsersFromFile() {
+        Map<String, User> users = new ConcurrentHashMap<>();
         try (BufferedReader bufferedReader = Files.newBufferedReader(Path.of(USERS_FILE_PATH))) {
             String line;
             while ((line = bufferedReader.readLine()) != null) {
                 String[] tokens = line.split(SPACE);
-                users.add(new User(tokens[0], tokens[1]));
+                users.put(normalizeEmail(tokens[0]), new User(tokens[0], tokens[1]));
             }
         } catch (IOException e) {
             throw new UncheckedIOException("A problem occurred while reading from a file", e);
@@ -5,6 +5,13 @@ import bg.sofia.uni.fmi.mjt.spotify.exception.NotFoundUserException;
 public interface UserRepositoryAPI {
     void save(String email, String password);
 
+    /**
+     * Saves the user only if there is no user with this email yet, as one atomic step.
+     *
+     * @return true if the user was saved, false if a user with this email already exists
+     */
+    boolean saveIfAbsent(String email, String password);
+
     boolean exists(String email);
 
     String getUserPassword(String email) throws NotFoundUserException;
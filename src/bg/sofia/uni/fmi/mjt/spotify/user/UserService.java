@@ -18,7 +18,7 @@ public class UserService {
         userRepository = new UserRepository();
     }
 
-    public UserService(UserRepository userRepository, SymmetricBlockCipher symmetricBlockCipher) {
+    public UserService(UserRepositoryAPI userRepository, SymmetricBlockCipher symmetricBlockCipher) {
         this.userRepository = userRepository;
         this.symmetricBlockCipher = symmetricBlockCipher;
     }
@@ -34,7 +34,9 @@ public class UserService {
                 "one uppercase letter, one lowercase letter and one number");
         }
         String encryptedPassword = symmetricBlockCipher.encrypt(password);
-        userRepository.save(email, encryptedPassword);
+        if (!userRepository.saveIfAbsent(email, encryptedPassword)) {
+            throw new UserAlreadyExistsException("User with email " + email + " already exists");
+        }
     }
 
     public void login(String email, String password)
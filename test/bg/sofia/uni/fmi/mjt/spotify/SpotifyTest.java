@@ -7,6 +7,8 @@ import bg.sofia.uni.fmi.mjt.spotify.exception.PlaylistAlreadyExistsException;
 import bg.sofia.uni.fmi.mjt.spotify.exception.SongAlreadyExistsException;
 import bg.sofia.uni.fmi.mjt.spotify.exception.UserAlreadyExistsException;
 import bg.sofia.uni.fmi.mjt.spotify.exception.WeakPasswordException;
+import bg.sofia.uni.fmi.mjt.spotify.metrics.MetricsRegistry;
+import bg.sofia.uni.fmi.mjt.spotify.protocol.FrameSink;
 import bg.sofia.uni.fmi.mjt.spotify.song.Playlist;
 import bg.sofia.uni.fmi.mjt.spotify.song.PlaylistService;
 import bg.sofia.uni.fmi.mjt.spotify.song.Song;
@@ -17,12 +19,15 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.nio.channels.SelectionKey;
 import java.security.NoSuchAlgorithmException;
 import java.util.List;
 import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertIterableEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -94,10 +99,33 @@ public class SpotifyTest {
 
     @Test
     void testStop() {
-        doNothing().when(playlistServiceMock).stopSong();
+        SelectionKey selectionKeyMock = mock(SelectionKey.class);
+        FrameSink clientSinkMock = mock(FrameSink.class);
+        when(selectionKeyMock.attachment()).thenReturn(clientSinkMock);
 
-        spotify.stopSong();
+        spotify.stopSong(selectionKeyMock);
 
-        verify(playlistServiceMock).stopSong();
+        verify(playlistServiceMock).stopSong(clientSinkMock);
+    }
+
+    @Test
+    void testConnectionClosedStopsTheStreamOfTheConnection() {
+        SelectionKey selectionKeyMock = mock(SelectionKey.class);
+        FrameSink clientSinkMock = mock(FrameSink.class);
+        when(selectionKeyMock.attachment()).thenReturn(clientSinkMock);
+
+        spotify.connectionClosed(selectionKeyMock);
+
+        verify(playlistServiceMock).stopSong(clientSinkMock);
+    }
+
+    @Test
+    void testRegisterGaugesUsesTheGivenRegistry() {
+        MetricsRegistry metrics = new MetricsRegistry();
+
+        spotify.registerGauges(metrics);
+
+        assertTrue(metrics.report().contains("sessions.open 0"), "Expected the session gauges in the given registry");
+        verify(playlistServiceMock).registerGauges(metrics);
     }
 }
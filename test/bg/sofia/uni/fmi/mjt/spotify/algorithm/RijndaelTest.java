@@ -6,6 +6,12 @@ import bg.sofia.uni.fmi.mjt.spotify.exception.CipherException;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 public class RijndaelTest {
@@ -25,4 +31,19 @@ public class RijndaelTest {
         assertEquals(textToEncrypt, resultDecrypted, "Expected: " + textToEncrypt + " but was: " +
             resultDecrypted);
     }
+
+    @Test
+    void testEncryptWithReusedCiphersConcurrently() throws Exception {
+        String expected = symmetricBlockCipher.encrypt("password1");
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(8)) {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                results.add(executor.submit(() -> symmetricBlockCipher.encrypt("password1")));
+            }
+            for (Future<String> result : results) {
+                assertEquals(expected, result.get(), "Expected reused ciphers to give the same result");
+            }
+        }
+    }
 }
@@ -2,6 +2,8 @@ package bg.sofia.uni.fmi.mjt.spotify.command;
 
 import org.junit.jupiter.api.Test;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
@@ -91,7 +93,32 @@ public class CommandCreatorTest {
         assertArrayEquals(expectedCommand.arguments(), resultCommand.arguments(), "Expected command arguments: "
             + Arrays.toString(expectedCommand.arguments()) + " but was: " + Arrays.toString(resultCommand.arguments()));
     }
-}
 
+    @Test
+    void testNewCommandIgnoresCaseAndRepeatedSpaces() {
+        Command resultCommand = CommandCreator.newCommand("  SHOW-Playlist    \"my list\"  ");
+
+        assertEquals(CommandType.SHOW_PLAYLIST, resultCommand.command());
+        assertArrayEquals(new String[]{"my list"}, resultCommand.arguments());
+    }
 
+    @Test
+    void testNewCommandFromBufferSlice() {
+        byte[] bytes = "xxplay \"Песен\" \"Певец\"yy".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer input = ByteBuffer.wrap(bytes, 2, bytes.length - 4).slice();
+
+        Command resultCommand = CommandCreator.newCommand(input);
 
+        assertEquals(CommandType.PLAY, resultCommand.command());
+        assertArrayEquals(new String[]{"Песен", "Певец"}, resultCommand.arguments());
+        assertEquals(0, input.position(), "Expected the buffer position to be left untouched");
+    }
+
+    @Test
+    void testNewCommandFromEmptyInput() {
+        Command resultCommand = CommandCreator.newCommand(" ");
+
+        assertEquals(CommandType.UNKNOWN, resultCommand.command());
+        assertArrayEquals(new String[0], resultCommand.arguments());
+    }
+}
@@ -8,6 +8,7 @@ import bg.sofia.uni.fmi.mjt.spotify.exception.NotFoundSongException;
 import bg.sofia.uni.fmi.mjt.spotify.exception.NotFoundUserException;
 import bg.sofia.uni.fmi.mjt.spotify.exception.PlaylistAlreadyExistsException;
 import bg.sofia.uni.fmi.mjt.spotify.exception.SongAlreadyExistsException;
+import bg.sofia.uni.fmi.mjt.spotify.exception.StreamLimitExceededException;
 import bg.sofia.uni.fmi.mjt.spotify.exception.UserAlreadyExistsException;
 import bg.sofia.uni.fmi.mjt.spotify.exception.WeakPasswordException;
 import bg.sofia.uni.fmi.mjt.spotify.song.Playlist;
@@ -133,7 +134,8 @@ public class CommandExecutorTest {
 
     @Test
     void testLogin() throws CipherException, NotFoundUserException {
-        String expected = "Login successful";
+        String expected = "Login successful" + System.lineSeparator() + CommandExecutor.SESSION_TOKEN_PREFIX + "token";
+        when(spotifyMock.login(USER_EMAIL, USER_PASSWORD, selectionKeyMock)).thenReturn("token");
         String result = commandExecutor.execute(new Command(CommandType.LOGIN, new String[] {USER_EMAIL, USER_PASSWORD}),
             selectionKeyMock);
 
@@ -169,6 +171,30 @@ public class CommandExecutorTest {
             " but was: " + result);
     }
 
+    @Test
+    void testResume() {
+        String expected = "Session resumed for " + USER_EMAIL;
+        when(spotifyMock.resume("token", selectionKeyMock)).thenReturn(true);
+        when(spotifyMock.getUsernameOfCurrentUser(selectionKeyMock)).thenReturn(USER_EMAIL);
+
+        String result = commandExecutor.execute(new Command(CommandType.RESUME, new String[] {"token"}),
+            selectionKeyMock);
+
+        assertEquals(expected, result, "Unexpected output for resume command. Expected:" + expected + " but was: "
+            + result);
+    }
+
+    @Test
+    void testResumeWithUnknownToken() {
+        String expected = "Unable to resume the session. It has expired or does not exist. Please login again";
+        when(spotifyMock.resume("token", selectionKeyMock)).thenReturn(false);
+
+        String result = commandExecutor.execute(new Command(CommandType.RESUME, new String[] {"token"}),
+            selectionKeyMock);
+
+        assertEquals(expected, result, "Unexpected output for resume command with unknown token");
+    }
+
     @Test
     void testDisconnect() {
         String expected = "Disconnect successful";
@@ -548,7 +574,7 @@ public class CommandExecutorTest {
     }
 
     @Test
-    void testPlay() throws NotFoundSongException {
+    void testPlay() throws NotFoundSongException, StreamLimitExceededException {
         String expected = "Streaming: song By singer";
 
         when(spotifyMock.getIsUserLogged(selectionKeyMock)).thenReturn(true);
@@ -561,6 +587,20 @@ public class CommandExecutorTest {
         verify(spotifyMock).play("song", "singer", selectionKeyMock);
     }
 
+    @Test
+    void testPlayWhenStreamLimitIsReached() throws NotFoundSongException, StreamLimitExceededException {
+        String expected = "Unable to play song because you are already streaming on 3 connections. " +
+            "Please stop one of them and try again";
+
+        when(spotifyMock.getIsUserLogged(selectionKeyMock)).thenReturn(true);
+        doThrow(new StreamLimitExceededException(expected)).when(spotifyMock).play("song", "singer",
+            selectionKeyMock);
+
+        String result = commandExecutor.execute(new Command(PLAY, new String[] {"song", "singer"}), selectionKeyMock);
+
+        assertEquals(expected, result, "Unexpected output for play command when the stream limit is reached");
+    }
+
     @Test
     void testStopMoreArguments() {
         String expected = String.format(INVALID_ARGS_COUNT_MESSAGE_FORMAT, STOP, 0, STOP);
@@ -584,7 +624,17 @@ public class CommandExecutorTest {
         assertEquals(expected, result, "Unexpected output for stop command. Expected: " + expected +
             " but was: " + result);
 
-        verify(spotifyMock).stopSong();
+        verify(spotifyMock).stopSong(selectionKeyMock);
+    }
+
+    @Test
+    void testStats() {
+        when(spotifyMock.getIsUserLogged(selectionKeyMock)).thenReturn(true);
+        commandExecutor.execute(new Command(TOP, new String[] {}), selectionKeyMock);
+
+        String result = commandExecutor.execute(new Command(CommandType.STATS, new String[] {}), selectionKeyMock);
+
+        assertTrue(result.contains("command.top count="), "Expected the stats to hold the latency of the commands");
     }
 
     @Test
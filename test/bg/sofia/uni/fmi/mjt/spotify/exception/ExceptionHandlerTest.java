@@ -0,0 +1,140 @@
+package bg.sofia.uni.fmi.mjt.spotify.exception;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ExceptionHandlerTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testHandledExceptionsAreWrittenOnClose() throws IOException {
+        Path errorsFile = tempDir.resolve("errors.txt");
+        ExceptionHandler exceptionHandler = new ExceptionHandler(errorsFile, 16, 1024 * 1024);
+
+        exceptionHandler.handleException(new IllegalStateException("first"), "user@mail.bg");
+        exceptionHandler.handleException(new IllegalStateException("second"), "other@mail.bg");
+        exceptionHandler.close();
+
+        List<String> lines = Files.readAllLines(errorsFile);
+        assertEquals(2, lines.size(), "Expected a line per handled exception");
+        assertTrue(lines.get(0).startsWith("User: user@mail.bg Exception stack trace:  "));
+        assertTrue(lines.get(1).startsWith("User: other@mail.bg "));
+        assertEquals(2, exceptionHandler.getWrittenCount());
+    }
+
+    @Test
+    void testExceptionsAreDroppedAndCountedWhenTheBufferIsFull() throws IOException {
+        Path errorsFile = tempDir.resolve("errors.txt");
+        ExceptionHandler exceptionHandler = new ExceptionHandler(errorsFile, 4, 1024 * 1024);
+
+        for (int i = 0; i < 10_000; i++) {
+            exceptionHandler.handleException(new IllegalStateException(), "user@mail.bg");
+        }
+        exceptionHandler.close();
+
+        assertTrue(exceptionHandler.getDroppedCount() > 0, "Expected a full buffer to drop exceptions");
+        assertEquals(10_000, exceptionHandler.getDroppedCount() + exceptionHandler.getWrittenCount());
+        String content = Files.readString(errorsFile);
+        assertTrue(content.contains("exceptions because the errors log could not keep up"),
+            "Expected the dropped exceptions to be reported in the file");
+    }
+
+    @Test
+    void testFileIsRolledWhenItGrowsOverTheMaximumSize() throws IOException {
+        Path errorsFile = tempDir.resolve("errors.txt");
+        Files.writeString(errorsFile, "x".repeat(200));
+        ExceptionHandler exceptionHandler = new ExceptionHandler(errorsFile, 16, 100);
+
+        exceptionHandler.handleException(new IllegalStateException(), "user@mail.bg");
+        exceptionHandler.close();
+
+        assertEquals("x".repeat(200), Files.readString(tempDir.resolve("errors.txt.1")));
+        assertTrue(Files.readString(errorsFile).startsWith("User: user@mail.bg"));
+    }
+
+    @Test
+    void testExceptionsAfterCloseAreDropped() {
+        ExceptionHandler exceptionHandler = new ExceptionHandler(tempDir.resolve("errors.txt"), 16, 1024);
+        exceptionHandler.close();
+
+        exceptionHandler.handleException(new IllegalStateException(), "user@mail.bg");
+
+        assertEquals(1, exceptionHandler.getDroppedCount());
+    }
+
+    @Test
+    void testExceptionsRacingCloseAreWrittenOrDropped() throws InterruptedException {
+        ExceptionHandler exceptionHandler = new ExceptionHandler(tempDir.resolve("errors.txt"), 1024, 1024 * 1024);
+        int reportersCount = 4;
+        int reportsCount = 10_000;
+        CountDownLatch started = new CountDownLatch(reportersCount);
+        List<Thread> reporters = new ArrayList<>();
+        for (int i = 0; i < reportersCount; i++) {
+            Thread reporter = new Thread(() -> {
+                started.countDown();
+                for (int j = 0; j < reportsCount; j++) {
+                    exceptionHandler.handleException(new IllegalStateException(), "user@mail.com");
+                }
+            });
+            reporters.add(reporter);
+            reporter.start();
+        }
+
+        started.await();
+        exceptionHandler.close();
+        for (Thread reporter : reporters) {
+            reporter.join();
+        }
+
+        assertEquals((long) reportersCount * reportsCount,
+            exceptionHandler.getWrittenCount() + exceptionHandler.getDroppedCount(),
+            "Expected every exception reported around close to be either written or counted as dropped");
+    }
+
+    @Test
+    void testExceptionsThatCannotBeWrittenAreCountedAsDropped() throws IOException {
+        Path errorsFile = Files.createDirectory(tempDir.resolve("errors.txt"));
+        ExceptionHandler exceptionHandler = new ExceptionHandler(errorsFile, 16, 1024 * 1024);
+
+        exceptionHandler.handleException(new IllegalStateException("first"), "user@mail.bg");
+        exceptionHandler.handleException(new IllegalStateException("second"), "user@mail.bg");
+        exceptionHandler.close();
+
+        assertEquals(0, exceptionHandler.getWrittenCount());
+        assertEquals(2, exceptionHandler.getDroppedCount(),
+            "Expected the exceptions of a failed batch to be counted as dropped");
+    }
+
+    @Test
+    void testFailedBatchIsReportedOnceTheFileCanBeWritten() throws IOException, InterruptedException {
+        Path errorsFile = Files.createDirectory(tempDir.resolve("errors.txt"));
+        ExceptionHandler exceptionHandler = new ExceptionHandler(errorsFile, 16, 1024 * 1024);
+
+        exceptionHandler.handleException(new IllegalStateException("first"), "user@mail.bg");
+        exceptionHandler.handleException(new IllegalStateException("second"), "user@mail.bg");
+        long deadline = System.currentTimeMillis() + 5000;
+        while (exceptionHandler.getDroppedCount() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Files.delete(errorsFile);
+        exceptionHandler.handleException(new IllegalStateException("third"), "other@mail.bg");
+        exceptionHandler.close();
+
+        assertEquals(3, exceptionHandler.getWrittenCount() + exceptionHandler.getDroppedCount());
+        List<String> lines = Files.readAllLines(errorsFile);
+        assertEquals(2, lines.size(), "Expected the written exception and the dropped ones to be reported");
+        assertTrue(lines.get(0).startsWith("User: other@mail.bg "));
+        assertEquals("Dropped 2 exceptions because the errors log could not keep up", lines.get(1));
+    }
+}
@@ -0,0 +1,49 @@
+package bg.sofia.uni.fmi.mjt.spotify.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LatencyHistogramTest {
+    @Test
+    void testBucketsCoverValuesWithinTheirPrecision() {
+        long[] values = {0, 1, 31, 32, 63, 64, 1000, 123_456_789, Long.MAX_VALUE};
+        for (long value : values) {
+            long lowest = LatencyHistogram.lowestValueOf(LatencyHistogram.bucketOf(value));
+
+            assertTrue(lowest <= value, "Expected the bucket of " + value + " to start at or below it");
+            assertTrue(value - lowest <= value / LatencyHistogram.SUB_BUCKETS_COUNT,
+                "Expected " + value + " to be recorded within the precision of the histogram");
+        }
+    }
+
+    @Test
+    void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 1000; value++) {
+            histogram.record(value * 1000);
+        }
+
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1_000_000, histogram.getMax());
+        assertEquals(500_500, histogram.getMean(), 0.001);
+        assertWithinPrecision(500_000, histogram.getValueAtPercentile(50));
+        assertWithinPrecision(990_000, histogram.getValueAtPercentile(99));
+        assertWithinPrecision(999_000, histogram.getValueAtPercentile(99.9));
+        assertEquals(1_000_000, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    void testEmptyHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        assertEquals(0, histogram.getValueAtPercentile(99));
+        assertEquals(0, histogram.getMean());
+    }
+
+    private static void assertWithinPrecision(long expected, long actual) {
+        assertTrue(Math.abs(expected - actual) <= expected / LatencyHistogram.SUB_BUCKETS_COUNT,
+            "Expected about " + expected + " but was " + actual);
+    }
+}
@@ -0,0 +1,55 @@
+package bg.sofia.uni.fmi.mjt.spotify.metrics;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MetricsRegistryTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testMetricsAreCreatedOnce() {
+        MetricsRegistry metrics = new MetricsRegistry();
+
+        assertSame(metrics.histogram("command.play"), metrics.histogram("command.play"));
+        assertSame(metrics.counter("connections.accepted"), metrics.counter("connections.accepted"));
+    }
+
+    @Test
+    void testReport() {
+        MetricsRegistry metrics = new MetricsRegistry();
+        metrics.counter("connections.accepted").add(3);
+        metrics.gauge("streaming.active-streams", () -> 2);
+        metrics.gauge("broken", () -> {
+            throw new IllegalStateException();
+        });
+        metrics.histogram("command.play").record(1_500);
+
+        String report = metrics.report();
+
+        assertTrue(report.contains("connections.accepted 3"), "Expected the counter in the report");
+        assertTrue(report.contains("streaming.active-streams 2"), "Expected the gauge in the report");
+        assertTrue(report.contains("broken unavailable"), "Expected a failing gauge not to break the report");
+        assertTrue(report.contains("command.play count=1 mean=1.5 p50=1.5 p90=1.5 p99=1.5 p999=1.5 max=1.5"),
+            "Expected the latencies in microseconds, but the report was " + report);
+    }
+
+    @Test
+    void testMetricsFileWriter() throws IOException {
+        MetricsRegistry metrics = new MetricsRegistry();
+        metrics.counter("connections.accepted").increment();
+        Path metricsFile = tempDir.resolve("metrics.txt");
+
+        try (MetricsFileWriter metricsFileWriter = new MetricsFileWriter(metrics, metricsFile, 60_000)) {
+            metricsFileWriter.write();
+            assertTrue(Files.readString(metricsFile).contains("connections.accepted 1"));
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package bg.sofia.uni.fmi.mjt.spotify.protocol;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class FrameReaderTest {
+    private static byte[] toBytes(Frame... frames) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        for (Frame frame : frames) {
+            ByteBuffer encoded = FrameCodec.encode(frame);
+            output.write(encoded.array(), 0, encoded.limit());
+        }
+        return output.toByteArray();
+    }
+
+    @Test
+    void testPipelinedFramesAreSplitCorrectly() throws IOException {
+        byte[] bytes = toBytes(Frame.of(FrameType.COMMAND, "top 3"), Frame.of(FrameType.COMMAND, "search test"));
+        FrameReader frameReader = new FrameReader();
+        frameReader.readFrom(Channels.newChannel(new ByteArrayInputStream(bytes)));
+
+        assertEquals("top 3", frameReader.nextFrame().text(), "Expected the first pipelined command");
+        assertEquals("search test", frameReader.nextFrame().text(), "Expected the second pipelined command");
+        assertNull(frameReader.nextFrame(), "No more frames expected");
+    }
+
+    @Test
+    void testFrameArrivingInPiecesIsAccumulated() throws IOException {
+        byte[] payload = new byte[5000];
+        Arrays.fill(payload, (byte) 7);
+        byte[] bytes = toBytes(new Frame(FrameType.AUDIO_CHUNK, payload));
+        FrameReader frameReader = new FrameReader();
+
+        int half = bytes.length / 2;
+        ReadableByteChannel firstPart = Channels.newChannel(new ByteArrayInputStream(bytes, 0, half));
+        while (frameReader.readFrom(firstPart) > 0) {
+            assertNull(frameReader.nextFrame(), "Frame should not be complete before all bytes arrive");
+        }
+        ReadableByteChannel secondPart = Channels.newChannel(
+            new ByteArrayInputStream(bytes, half, bytes.length - half));
+        Frame frame = null;
+        while (frame == null && frameReader.readFrom(secondPart) >= 0) {
+            frame = frameReader.nextFrame();
+        }
+
+        assertEquals(FrameType.AUDIO_CHUNK, frame.type(), "Unexpected frame type");
+        assertArrayEquals(payload, frame.payload(), "Payload should be reassembled without corruption");
+    }
+
+    @Test
+    void testUnknownFrameType() throws IOException {
+        byte[] bytes = {0, 0, 0, 0, 42};
+        FrameReader frameReader = new FrameReader();
+        frameReader.readFrom(Channels.newChannel(new ByteArrayInputStream(bytes)));
+
+        assertThrows(ProtocolException.class, frameReader::nextFrame,
+            "ProtocolException expected for unknown frame type but nothing was thrown");
+    }
+
+    @Test
+    void testPayloadIsParsedFromTheReadBuffer() throws IOException {
+        byte[] bytes = toBytes(Frame.of(FrameType.COMMAND, "top 3"), Frame.of(FrameType.COMMAND, "stop"));
+        FrameReader frameReader = new FrameReader();
+        frameReader.readFrom(Channels.newChannel(new ByteArrayInputStream(bytes)));
+
+        Function<ByteBuffer, String> parser = payload -> StandardCharsets.UTF_8.decode(payload).toString();
+        assertEquals("top 3", frameReader.nextFrame(FrameType.COMMAND, parser));
+        assertEquals("stop", frameReader.nextFrame(FrameType.COMMAND, parser));
+        assertNull(frameReader.nextFrame(FrameType.COMMAND, parser), "No more frames expected");
+    }
+
+    @Test
+    void testPayloadOfUnexpectedFrameType() throws IOException {
+        byte[] bytes = toBytes(Frame.of(FrameType.REPLY, "reply"));
+        FrameReader frameReader = new FrameReader();
+        frameReader.readFrom(Channels.newChannel(new ByteArrayInputStream(bytes)));
+
+        assertThrows(ProtocolException.class, () -> frameReader.nextFrame(FrameType.COMMAND, payload -> payload),
+            "ProtocolException expected for a frame of unexpected type");
+    }
+
+    @Test
+    void testCommandLargerThanTheLimitIsRejectedFromItsHeader() throws IOException {
+        ByteBuffer header = FrameCodec.encodeHeader(FrameType.COMMAND, FrameCodec.MAX_COMMAND_PAYLOAD_SIZE + 1);
+        FrameReader commandReader = new FrameReader(FrameCodec.MAX_COMMAND_PAYLOAD_SIZE);
+        commandReader.readFrom(Channels.newChannel(new ByteArrayInputStream(header.array(), 0, header.limit())));
+
+        assertThrows(ProtocolException.class, commandReader::nextFrame,
+            "ProtocolException expected for a command over the limit before its payload arrives");
+
+        FrameReader audioReader = new FrameReader();
+        audioReader.readFrom(Channels.newChannel(new ByteArrayInputStream(header.array(), 0, header.limit())));
+        assertNull(audioReader.nextFrame(), "The default limit should wait for the rest of the frame");
+    }
+
+    @Test
+    void testCommandAtTheLimitIsAccepted() throws IOException {
+        String command = "a".repeat(FrameCodec.MAX_COMMAND_PAYLOAD_SIZE);
+        byte[] bytes = toBytes(Frame.of(FrameType.COMMAND, command));
+        FrameReader frameReader = new FrameReader(FrameCodec.MAX_COMMAND_PAYLOAD_SIZE);
+        ReadableByteChannel channel = Channels.newChannel(new ByteArrayInputStream(bytes));
+
+        Frame frame = null;
+        while (frame == null && frameReader.readFrom(channel) >= 0) {
+            frame = frameReader.nextFrame();
+        }
+
+        assertEquals(command, frame.text(), "A command of exactly the limit should be accepted");
+    }
+
+    @Test
+    void testConsumedFramesAreNotMovedOutOfTheBuffer() throws IOException {
+        byte[] bytes = toBytes(Frame.of(FrameType.COMMAND, "top 3"), Frame.of(FrameType.COMMAND, "stop"));
+        FrameReader frameReader = new FrameReader();
+        frameReader.readFrom(Channels.newChannel(new ByteArrayInputStream(bytes)));
+
+        frameReader.nextFrame(FrameType.COMMAND, payload -> payload);
+        int secondOffset = frameReader.nextFrame(FrameType.COMMAND, ByteBuffer::arrayOffset);
+
+        assertEquals(FrameCodec.HEADER_SIZE + "top 3".length() + FrameCodec.HEADER_SIZE, secondOffset,
+            "The second frame should be decoded in place instead of being moved to the start of the buffer");
+    }
+
+    @Test
+    void testFramesSpanningBufferRefillsAreSplitCorrectly() throws IOException {
+        List<Frame> frames = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            frames.add(Frame.of(FrameType.COMMAND, "play song " + i));
+        }
+        byte[] bytes = toBytes(frames.toArray(Frame[]::new));
+        FrameReader frameReader = new FrameReader(FrameCodec.MAX_COMMAND_PAYLOAD_SIZE);
+        ReadableByteChannel channel = Channels.newChannel(new ByteArrayInputStream(bytes));
+
+        List<String> commands = new ArrayList<>();
+        while (frameReader.readFrom(channel) > 0) {
+            Frame frame;
+            while ((frame = frameReader.nextFrame()) != null) {
+                commands.add(frame.text());
+            }
+        }
+
+        assertEquals(frames.stream().map(Frame::text).toList(), commands,
+            "Every frame should be split correctly when the buffer is refilled");
+    }
+}
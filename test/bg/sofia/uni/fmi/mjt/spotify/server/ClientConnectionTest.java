@@ -0,0 +1,146 @@
+package bg.sofia.uni.fmi.mjt.spotify.server;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ClientConnectionTest {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private SelectionKey selectionKey;
+    private SocketChannel channel;
+    private AtomicInteger interestOps;
+    private AtomicLong socketCapacity;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        interestOps = new AtomicInteger(SelectionKey.OP_READ);
+        socketCapacity = new AtomicLong();
+        channel = mock(SocketChannel.class);
+        when(channel.write(any(ByteBuffer.class))).thenAnswer(invocation -> {
+            ByteBuffer buffer = invocation.getArgument(0);
+            int written = (int) Math.min(buffer.remaining(), socketCapacity.get());
+            buffer.position(buffer.position() + written);
+            socketCapacity.addAndGet(-written);
+            return written;
+        });
+        selectionKey = mock(SelectionKey.class);
+        when(selectionKey.channel()).thenReturn(channel);
+        when(selectionKey.selector()).thenReturn(mock(Selector.class));
+        when(selectionKey.isValid()).thenReturn(true);
+        when(selectionKey.interestOps()).thenAnswer(invocation -> interestOps.get());
+        when(selectionKey.interestOps(anyInt())).thenAnswer(invocation -> {
+            interestOps.set(invocation.getArgument(0));
+            return selectionKey;
+        });
+    }
+
+    private boolean isReading() {
+        return (interestOps.get() & SelectionKey.OP_READ) != 0;
+    }
+
+    private void enqueueBytes(ClientConnection connection, long bytesCount) throws IOException {
+        for (long enqueued = 0; enqueued < bytesCount; enqueued += BUFFER_SIZE) {
+            connection.enqueue(ByteBuffer.allocate(BUFFER_SIZE));
+        }
+    }
+
+    @Test
+    void testFailedCommandDoesNotStopTheNextOnes() {
+        List<Runnable> scheduledDrains = new ArrayList<>();
+        ClientConnection connection = new ClientConnection(selectionKey, scheduledDrains::add);
+        List<String> executed = new ArrayList<>();
+
+        connection.submit(() -> {
+            throw new IllegalStateException("broken command");
+        });
+        connection.submit(() -> executed.add("second"));
+        scheduledDrains.removeFirst().run();
+        connection.submit(() -> executed.add("third"));
+        scheduledDrains.removeFirst().run();
+
+        assertEquals(List.of("second", "third"), executed,
+            "Expected the commands after a failed one to run and the drain to be scheduled again when needed");
+    }
+
+    @Test
+    void testCommandsLeftBehindAnErrorAreScheduledAgain() {
+        List<Runnable> scheduledDrains = new ArrayList<>();
+        ClientConnection connection = new ClientConnection(selectionKey, scheduledDrains::add);
+        List<String> executed = new ArrayList<>();
+
+        connection.submit(() -> {
+            throw new AssertionError("fatal command");
+        });
+        connection.submit(() -> executed.add("second"));
+
+        assertThrows(AssertionError.class, () -> scheduledDrains.removeFirst().run(),
+            "Expected the error to reach the executor");
+        scheduledDrains.removeFirst().run();
+
+        assertEquals(List.of("second"), executed, "Expected the command after the error to run in a new drain");
+    }
+
+    @Test
+    void testReadingPausesOverTheHighWatermarkAndResumesUnderTheLowWatermark() throws IOException {
+        ClientConnection connection = new ClientConnection(selectionKey);
+
+        enqueueBytes(connection, ClientConnection.HIGH_WATERMARK - BUFFER_SIZE);
+        assertTrue(isReading(), "Expected reading to go on under the high watermark");
+        assertFalse(connection.isCongested());
+
+        enqueueBytes(connection, BUFFER_SIZE);
+        assertFalse(isReading(), "Expected reading to pause once 1 MiB waits to be sent");
+        assertTrue(connection.isCongested(), "Expected the connection to be congested over the high watermark");
+        assertTrue((interestOps.get() & SelectionKey.OP_WRITE) != 0, "Expected to wait for the socket to be writable");
+
+        socketCapacity.set(ClientConnection.HIGH_WATERMARK - ClientConnection.LOW_WATERMARK - BUFFER_SIZE);
+        connection.flush();
+        assertFalse(isReading(), "Expected reading to stay paused between the watermarks");
+        assertFalse(connection.isCongested());
+
+        socketCapacity.set(BUFFER_SIZE);
+        connection.flush();
+        assertEquals(ClientConnection.LOW_WATERMARK, connection.getQueuedBytes());
+        assertTrue(isReading(), "Expected reading to resume once the queue drops to 256 KiB");
+
+        socketCapacity.set(Long.MAX_VALUE);
+        connection.flush();
+        assertEquals(SelectionKey.OP_READ, interestOps.get(), "Expected only reads once the queue is empty");
+    }
+
+    @Test
+    void testReadingPausesWhileTooManyCommandsArePending() {
+        List<Runnable> scheduledDrains = new ArrayList<>();
+        ClientConnection connection = new ClientConnection(selectionKey, scheduledDrains::add);
+
+        for (int i = 0; i < ClientConnection.MAX_PENDING_COMMANDS - 1; i++) {
+            connection.submit(() -> { });
+        }
+        assertTrue(isReading(), "Expected reading to go on under the limit of pending commands");
+
+        connection.submit(() -> { });
+        assertFalse(isReading(), "Expected reading to pause at the limit of pending commands");
+
+        scheduledDrains.removeFirst().run();
+        assertTrue(isReading(), "Expected reading to resume once the commands ran");
+    }
+}
@@ -0,0 +1,118 @@
+package bg.sofia.uni.fmi.mjt.spotify.server;
+
+import bg.sofia.uni.fmi.mjt.spotify.command.CommandExecutor;
+import bg.sofia.uni.fmi.mjt.spotify.protocol.Frame;
+import bg.sofia.uni.fmi.mjt.spotify.protocol.FrameCodec;
+import bg.sofia.uni.fmi.mjt.spotify.protocol.FrameReader;
+import bg.sofia.uni.fmi.mjt.spotify.protocol.FrameType;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ReactorTest {
+    private static final String HOST = "localhost";
+    private static final int REACTORS_COUNT = 2;
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    @Test
+    void testClientsAreSpreadOverReactorsAndAllGetReplies() throws IOException, InterruptedException {
+        CommandExecutor executor = mock(CommandExecutor.class);
+        when(executor.execute(any(), any())).thenAnswer(invocation -> Thread.currentThread().getName());
+        int port = findFreePort();
+        SpotifyServer server = new SpotifyServer(port, executor, REACTORS_COUNT);
+        Thread serverThread = new Thread(server::start);
+        serverThread.start();
+
+        List<SocketChannel> clients = new ArrayList<>();
+        try {
+            for (int i = 0; i < 2 * REACTORS_COUNT; i++) {
+                clients.add(connect(port));
+            }
+            Set<String> reactorThreads = new HashSet<>();
+            for (SocketChannel client : clients) {
+                FrameCodec.writeFully(client, Frame.of(FrameType.COMMAND, "top 1"));
+                Frame reply = readFrame(client);
+                assertEquals(FrameType.REPLY, reply.type(), "Expected every client to get a reply");
+                reactorThreads.add(reply.text());
+            }
+            assertEquals(REACTORS_COUNT, reactorThreads.size(),
+                "Expected the clients to be spread over all reactors, but were served by " + reactorThreads);
+        } finally {
+            for (SocketChannel client : clients) {
+                client.close();
+            }
+            server.stop();
+            serverThread.join(TIMEOUT_MILLIS);
+        }
+    }
+
+    @Test
+    void testClosedConnectionIsReportedToTheExecutor() throws IOException, InterruptedException {
+        CommandExecutor executor = mock(CommandExecutor.class);
+        when(executor.execute(any(), any())).thenReturn("reply");
+        Reactor reactor = new Reactor(executor);
+        Thread reactorThread = new Thread(reactor);
+        reactorThread.start();
+
+        try (ServerSocketChannel serverChannel = ServerSocketChannel.open()) {
+            serverChannel.bind(new InetSocketAddress(HOST, 0));
+            SocketChannel client = SocketChannel.open(serverChannel.getLocalAddress());
+            reactor.register(serverChannel.accept());
+
+            FrameCodec.writeFully(client, Frame.of(FrameType.COMMAND, "top 1"));
+            assertEquals("reply", readFrame(client).text(), "Expected the reply of the registered connection");
+            client.close();
+
+            verify(executor, timeout(TIMEOUT_MILLIS)).connectionClosed(any(SelectionKey.class));
+        } finally {
+            reactor.stop();
+            reactorThread.join(TIMEOUT_MILLIS);
+        }
+    }
+
+    private static int findFreePort() throws IOException {
+        try (ServerSocketChannel channel = ServerSocketChannel.open()) {
+            channel.bind(new InetSocketAddress(HOST, 0));
+            return ((InetSocketAddress) channel.getLocalAddress()).getPort();
+        }
+    }
+
+    private static SocketChannel connect(int port) throws IOException, InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (true) {
+            try {
+                return SocketChannel.open(new InetSocketAddress(HOST, port));
+            } catch (IOException e) {
+                assertTrue(System.currentTimeMillis() < deadline, "Expected the server to start listening");
+                Thread.sleep(10);
+            }
+        }
+    }
+
+    private static Frame readFrame(SocketChannel client) throws IOException {
+        FrameReader frameReader = new FrameReader();
+        Frame frame;
+        while ((frame = frameReader.nextFrame()) == null) {
+            if (frameReader.readFrom(client) < 0) {
+                throw new IOException("The server closed the connection");
+            }
+        }
+        return frame;
+    }
+}
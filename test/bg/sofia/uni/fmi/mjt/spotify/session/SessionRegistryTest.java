@@ -0,0 +1,80 @@
+package bg.sofia.uni.fmi.mjt.spotify.session;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.channels.SelectionKey;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.mock;
+
+public class SessionRegistryTest {
+    private final SelectionKey firstConnection = mock(SelectionKey.class);
+    private final SelectionKey secondConnection = mock(SelectionKey.class);
+
+    @Test
+    void testOpenReturnsExistingSessionOfConnection() {
+        SessionRegistry sessions = new SessionRegistry();
+
+        Session first = sessions.open(firstConnection, "user@mail.bg");
+        Session second = sessions.open(firstConnection, "other@mail.bg");
+
+        assertSame(first, second, "Expected a connection to keep its session");
+        assertEquals("user@mail.bg", sessions.get(firstConnection).getUserEmail());
+    }
+
+    @Test
+    void testResumeAfterConnectionIsLost() {
+        SessionRegistry sessions = new SessionRegistry();
+        Session session = sessions.open(firstConnection, "user@mail.bg");
+
+        sessions.detach(firstConnection);
+
+        assertNull(sessions.get(firstConnection), "Expected a lost connection to have no session");
+        assertSame(session, sessions.resume(session.getToken(), secondConnection),
+            "Expected a detached session to be resumable with its token");
+        assertSame(secondConnection, session.getConnection());
+    }
+
+    @Test
+    void testResumeMovesSessionFromOldConnection() {
+        SessionRegistry sessions = new SessionRegistry();
+        Session session = sessions.open(firstConnection, "user@mail.bg");
+
+        sessions.resume(session.getToken(), secondConnection);
+
+        assertNull(sessions.get(firstConnection), "Expected the old connection to lose the resumed session");
+        assertSame(session, sessions.get(secondConnection));
+    }
+
+    @Test
+    void testResumeAfterLogoutFails() {
+        SessionRegistry sessions = new SessionRegistry();
+        Session session = sessions.open(firstConnection, "user@mail.bg");
+
+        sessions.close(firstConnection);
+
+        assertNull(sessions.resume(session.getToken(), secondConnection), "Expected a logged out session to be gone");
+    }
+
+    @Test
+    void testResumeAfterTimeoutFails() throws InterruptedException {
+        SessionRegistry sessions = new SessionRegistry(1);
+        Session session = sessions.open(firstConnection, "user@mail.bg");
+        sessions.detach(firstConnection);
+
+        Thread.sleep(5);
+
+        assertNull(sessions.resume(session.getToken(), secondConnection), "Expected an expired session to be gone");
+    }
+
+    @Test
+    void testTokensAreUnique() {
+        SessionRegistry sessions = new SessionRegistry();
+
+        assertNotEquals(sessions.open(firstConnection, "user@mail.bg").getToken(),
+            sessions.open(secondConnection, "user@mail.bg").getToken());
+    }
+}
@@ -0,0 +1,84 @@
+package bg.sofia.uni.fmi.mjt.spotify.song;
+
+import bg.sofia.uni.fmi.mjt.spotify.storage.StorageEngine;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class EmbeddedPlaylistStorageTest {
+    private static final int SONGS_COUNT = 1000;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testColdPlaylistIsNotResidentAfterReopening() {
+        Path file = directory.resolve("spotify.db");
+        Set<Song> songs = new HashSet<>();
+        try (StorageEngine storageEngine = new StorageEngine(file)) {
+            EmbeddedPlaylistStorage playlistStorage = new EmbeddedPlaylistStorage(storageEngine);
+            playlistStorage.createPlaylist("cold");
+            for (int i = 0; i < SONGS_COUNT; i++) {
+                Song song = new Song("Song " + i, "Singer", 0);
+                playlistStorage.addSong("cold", song);
+                songs.add(song);
+            }
+        }
+
+        try (StorageEngine storageEngine = new StorageEngine(file)) {
+            int pagesCount = (SONGS_COUNT + EmbeddedPlaylistStorage.PAGE_SIZE - 1) / EmbeddedPlaylistStorage.PAGE_SIZE;
+            assertEquals(1 + pagesCount, storageEngine.getKeysCount(),
+                "Expected only the playlist and its pages to be indexed, not its songs");
+
+            EmbeddedPlaylistStorage playlistStorage = new EmbeddedPlaylistStorage(storageEngine);
+            assertEquals(Set.of("cold"), playlistStorage.readPlaylistNames());
+            assertEquals(songs, playlistStorage.readPlaylist("cold").getSongs(),
+                "Expected the songs to be read from disk when the playlist is loaded");
+        }
+    }
+
+    @Test
+    void testImportSplitsPlaylistsIntoPages() {
+        Playlist source = new Playlist("imported");
+        Set<Song> songs = new HashSet<>();
+        for (int i = 0; i < EmbeddedPlaylistStorage.PAGE_SIZE + 1; i++) {
+            songs.add(new Song("Song " + i, "Singer", 0));
+        }
+        source.setSongs(songs);
+        PlaylistStorage sourceStorage = new PlaylistStorage() {
+            @Override
+            public Set<String> readPlaylistNames() {
+                return Set.of("imported");
+            }
+
+            @Override
+            public Playlist readPlaylist(String playlistName) {
+                return source;
+            }
+
+            @Override
+            public void createPlaylist(String playlistName) {
+            }
+
+            @Override
+            public void addSong(String playlistName, Song song) {
+            }
+        };
+
+        try (StorageEngine storageEngine = new StorageEngine(directory.resolve("spotify.db"))) {
+            EmbeddedPlaylistStorage playlistStorage = new EmbeddedPlaylistStorage(storageEngine);
+            playlistStorage.importFrom(sourceStorage);
+            playlistStorage.addSong("imported", new Song("Added", "Singer", 0));
+
+            Set<Song> playlistSongs = playlistStorage.readPlaylist("imported").getSongs();
+            assertEquals(songs.size() + 1, playlistSongs.size(), "Expected the imported and the added songs");
+            assertTrue(playlistSongs.containsAll(songs), "Expected every imported song to be read back");
+        }
+    }
+}
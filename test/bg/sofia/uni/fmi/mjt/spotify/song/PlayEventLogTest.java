@@ -0,0 +1,252 @@
+package bg.sofia.uni.fmi.mjt.spotify.song;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PlayEventLogTest {
+    private static final long NO_PERIODIC_COMPACTION = Long.MAX_VALUE;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testCompactWritesPlayCountsToSnapshot() throws IOException {
+        Path songsFile = directory.resolve("songs.txt");
+        Song song = new Song("Some Song", "Some Singer", 2);
+
+        try (PlayEventLog log = new PlayEventLog(directory.resolve("events"), songsFile, List.of(song),
+            NO_PERIODIC_COMPACTION, PlayEventLog.DEFAULT_MAX_SEGMENT_BYTES)) {
+            log.append(song, "user@mail.bg").join();
+            log.append(song, "user@mail.bg").join();
+            log.compact().join();
+        }
+
+        List<String> lines = Files.readAllLines(songsFile);
+        assertTrue(lines.get(0).startsWith(PlayEventLog.COMPACTED_SEGMENT_HEADER),
+            "Expected the snapshot to start with the compacted segment header");
+        assertTrue(lines.contains("Some-Song Some-Singer 4"), "Expected the folded play count, but was: " + lines);
+    }
+
+    @Test
+    void testRecoveryReplaysSegmentsNotInSnapshot() throws IOException {
+        Path songsFile = directory.resolve("songs.txt");
+        Path crashedDirectory = directory.resolve("crashed");
+        Files.createDirectories(crashedDirectory);
+        Song song = new Song("Song", "Singer", 0);
+
+        try (PlayEventLog log = new PlayEventLog(directory.resolve("events"), songsFile, List.of(song),
+            NO_PERIODIC_COMPACTION, PlayEventLog.DEFAULT_MAX_SEGMENT_BYTES)) {
+            log.append(song, "first@mail.bg").join();
+            log.append(song, "second@mail.bg").join();
+
+            try (var segments = Files.list(directory.resolve("events"))) {
+                for (Path segment : segments.toList()) {
+                    Files.copy(segment, crashedDirectory.resolve(segment.getFileName()));
+                }
+            }
+        }
+
+        List<PlayEvent> events = new ArrayList<>();
+        try (var segments = Files.list(crashedDirectory)) {
+            for (Path segment : segments.toList()) {
+                PlayEventLog.readEvents(segment, events::add);
+            }
+        }
+        assertEquals(2, events.size(), "Expected both plays to be durable in the segment");
+        assertEquals("second@mail.bg", events.get(1).user());
+
+        Song restarted = new Song("Song", "Singer", 0);
+        PlayEventLog log = new PlayEventLog(crashedDirectory, directory.resolve("other.txt"), List.of(restarted),
+            NO_PERIODIC_COMPACTION, PlayEventLog.DEFAULT_MAX_SEGMENT_BYTES);
+        log.close();
+        assertEquals(2, restarted.getPlayingTimes(), "Expected the logged plays to be replayed on start");
+    }
+
+    @Test
+    void testAppendsRacingCloseAreAlwaysCompleted() throws InterruptedException {
+        Song song = new Song("Song", "Singer", 0);
+        List<CompletableFuture<Void>> written = new CopyOnWriteArrayList<>();
+        PlayEventLog log = new PlayEventLog(directory.resolve("events"), directory.resolve("songs.txt"),
+            List.of(song), NO_PERIODIC_COMPACTION, PlayEventLog.DEFAULT_MAX_SEGMENT_BYTES);
+
+        List<Thread> players = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            players.add(Thread.ofVirtual().start(() -> {
+                try {
+                    while (true) {
+                        written.add(log.append(song, "user@mail.bg"));
+                    }
+                } catch (IllegalStateException e) {
+                    // the log is closed
+                }
+            }));
+        }
+        Thread.sleep(50);
+        log.close();
+        for (Thread player : players) {
+            player.join();
+        }
+
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> written.forEach(future -> {
+            try {
+                future.join();
+            } catch (CompletionException e) {
+                assertTrue(e.getCause() instanceof IllegalStateException, "Unexpected failure " + e.getCause());
+            }
+        }), "Expected every append to be completed once the log is closed");
+    }
+
+    @Test
+    void testFailedBatchDoesNotHideLaterBatchesOnReplay() throws IOException {
+        Path crashedDirectory = Files.createDirectories(directory.resolve("crashed"));
+        Song song = new Song("Song", "Singer", 0);
+        try (PlayEventLog log = new PlayEventLog(directory.resolve("events"), directory.resolve("songs.txt"),
+            List.of(song), NO_PERIODIC_COMPACTION, PlayEventLog.DEFAULT_MAX_SEGMENT_BYTES, FailingForceChannel::open)) {
+            assertThrows(CompletionException.class, () -> log.append(song, "failed@mail.bg").join(),
+                "Expected the play of the failed batch to fail");
+            log.append(song, "durable@mail.bg").join();
+
+            try (var segments = Files.list(directory.resolve("events"))) {
+                for (Path segment : segments.toList()) {
+                    Files.copy(segment, crashedDirectory.resolve(segment.getFileName()));
+                }
+            }
+        }
+
+        Song restarted = new Song("Song", "Singer", 0);
+        PlayEventLog log = new PlayEventLog(crashedDirectory, directory.resolve("other.txt"), List.of(restarted),
+            NO_PERIODIC_COMPACTION, PlayEventLog.DEFAULT_MAX_SEGMENT_BYTES);
+        log.close();
+        assertEquals(1, restarted.getPlayingTimes(), "Expected the acknowledged play to survive the replay");
+    }
+
+    /**
+     * Writes through to a real segment, but its first {@code force} fails after the bytes were written.
+     */
+    private static class FailingForceChannel extends FileChannel {
+        private final FileChannel channel;
+        private boolean hasFailed;
+
+        private FailingForceChannel(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        static FileChannel open(Path segment) throws IOException {
+            return new FailingForceChannel(FileChannel.open(segment, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND));
+        }
+
+        @Override
+        public void force(boolean metaData) throws IOException {
+            if (!hasFailed) {
+                hasFailed = true;
+                throw new IOException("Injected failure");
+            }
+            channel.force(metaData);
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            return channel.write(src);
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+            return channel.write(srcs, offset, length);
+        }
+
+        @Override
+        public int write(ByteBuffer src, long position) throws IOException {
+            return channel.write(src, position);
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            return channel.read(dst);
+        }
+
+        @Override
+        public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+            return channel.read(dsts, offset, length);
+        }
+
+        @Override
+        public int read(ByteBuffer dst, long position) throws IOException {
+            return channel.read(dst, position);
+        }
+
+        @Override
+        public long position() throws IOException {
+            return channel.position();
+        }
+
+        @Override
+        public FileChannel position(long newPosition) throws IOException {
+            channel.position(newPosition);
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            return channel.size();
+        }
+
+        @Override
+        public FileChannel truncate(long size) throws IOException {
+            channel.truncate(size);
+            return this;
+        }
+
+        @Override
+        public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+            return channel.transferTo(position, count, target);
+        }
+
+        @Override
+        public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException {
+            return channel.transferFrom(src, position, count);
+        }
+
+        @Override
+        public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+            return channel.map(mode, position, size);
+        }
+
+        @Override
+        public FileLock lock(long position, long size, boolean shared) throws IOException {
+            return channel.lock(position, size, shared);
+        }
+
+        @Override
+        public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+            return channel.tryLock(position, size, shared);
+        }
+
+        @Override
+        protected void implCloseChannel() throws IOException {
+            channel.close();
+        }
+    }
+}
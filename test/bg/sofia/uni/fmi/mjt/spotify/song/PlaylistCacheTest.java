@@ -0,0 +1,110 @@
+package bg.sofia.uni.fmi.mjt.spotify.song;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static bg.sofia.uni.fmi.mjt.spotify.song.PlaylistCache.DEFAULT_CAPACITY;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PlaylistCacheTest {
+    @Test
+    void testLoadsOnFirstAccessOnly() {
+        List<String> loaded = new ArrayList<>();
+        PlaylistCache cache = new PlaylistCache(2, name -> {
+            loaded.add(name);
+            return new Playlist(name);
+        });
+
+        cache.get("First");
+        cache.get("First");
+
+        assertEquals(List.of("First"), loaded, "Expected a cached playlist not to be loaded again");
+    }
+
+    @Test
+    void testEvictsLeastRecentlyUsed() {
+        List<String> loaded = new ArrayList<>();
+        PlaylistCache cache = new PlaylistCache(2, name -> {
+            loaded.add(name);
+            return new Playlist(name);
+        });
+
+        cache.get("First");
+        cache.get("Second");
+        cache.get("First");
+        cache.get("Third");
+        cache.get("First");
+        cache.get("Second");
+
+        assertEquals(List.of("First", "Second", "Third", "Second"), loaded,
+            "Expected only the least recently used playlist to be evicted");
+        assertEquals(2, cache.getCachedPlaylistsCount());
+    }
+
+    @Test
+    void testAddSongReportsDuplicates() {
+        List<Playlist> written = new ArrayList<>();
+        PlaylistCache cache = new PlaylistCache(1, Playlist::new);
+        Song song = new Song("Song", "Singer", 0);
+
+        assertTrue(cache.addSong("Playlist", song, written::add), "Expected a new song to be added");
+        assertFalse(cache.addSong("Playlist", song, written::add), "Expected a duplicate song to be rejected");
+        assertEquals(1, written.size(), "Expected only the added song to be written");
+    }
+
+    @Test
+    void testFailedStoreLeavesThePlaylistUnchanged() {
+        PlaylistCache cache = new PlaylistCache(1, Playlist::new);
+        Song song = new Song("Song", "Singer", 0);
+
+        assertThrows(UncheckedIOException.class, () -> cache.addSong("Playlist", song, playlist -> {
+            throw new UncheckedIOException(new IOException("disk full"));
+        }), "Expected the storage failure to reach the caller");
+
+        assertFalse(cache.get("Playlist").containsSong(song), "Expected a song that was not stored not to be added");
+        assertTrue(cache.addSong("Playlist", song, playlist -> { }), "Expected the song to be added on a retry");
+    }
+
+    @Test
+    void testLoadOfOnePlaylistDoesNotBlockOthers() throws InterruptedException {
+        CountDownLatch isSlowLoadStarted = new CountDownLatch(1);
+        CountDownLatch canSlowLoadFinish = new CountDownLatch(1);
+        PlaylistCache cache = new PlaylistCache(DEFAULT_CAPACITY, name -> {
+            if (name.equals("Slow")) {
+                isSlowLoadStarted.countDown();
+                awaitUninterruptibly(canSlowLoadFinish);
+            }
+            return new Playlist(name);
+        });
+
+        Thread slowReader = Thread.ofVirtual().start(() -> cache.get("Slow"));
+        isSlowLoadStarted.await();
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+            for (int i = 0; i < 100; i++) {
+                cache.addSong("Fast " + i, new Song("Song", "Singer", 0), playlist -> { });
+            }
+        }, "Expected other playlists to be loaded while one playlist is loading");
+        canSlowLoadFinish.countDown();
+        slowReader.join();
+
+        assertEquals(101, cache.getCachedPlaylistsCount());
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -120,4 +120,15 @@ public class PlaylistServiceTest {
                 "Random", "Test Singer"),
             "SongAlreadyExistsException expected when song not exist but nothing was thrown");
     }
+
+    @Test
+    void testAddSongToPlaylistIgnoresCase() {
+        Playlist expected = new Playlist("Playlist");
+        expected.setSongs(Set.of(new Song("Random", "Test Singer", 10)));
+        PlaylistService playlistServiceTest = new PlaylistService(new StringReader(SAMPLE_SONGS), Set.of(expected));
+
+        assertThrows(SongAlreadyExistsException.class, () -> playlistServiceTest.addSongTo("Playlist",
+                "rANDOM", "test singer"),
+            "Expected the song to be found regardless of the case of its name and singer");
+    }
 }
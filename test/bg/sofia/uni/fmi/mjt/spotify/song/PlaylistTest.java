@@ -0,0 +1,41 @@
+package bg.sofia.uni.fmi.mjt.spotify.song;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class PlaylistTest {
+    @Test
+    void testConcurrentAddsKeepEverySongOnce() {
+        Playlist playlist = new Playlist("Playlist");
+        AtomicInteger addedCount = new AtomicInteger();
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(8)) {
+            IntStream.range(0, 2_000).forEach(i -> executor.submit(() -> {
+                if (playlist.addSong(new Song("Song " + i % 1_000, "Singer", 0))) {
+                    addedCount.incrementAndGet();
+                }
+            }));
+        }
+
+        assertEquals(1_000, playlist.getSongs().size(), "Expected every distinct song in the playlist");
+        assertEquals(1_000, addedCount.get(), "Expected every song to be reported as added exactly once");
+    }
+
+    @Test
+    void testGetSongsReturnsSnapshot() {
+        Playlist playlist = new Playlist("Playlist");
+        playlist.addSong(new Song("First", "Singer", 0));
+
+        Set<Song> songs = playlist.getSongs();
+        playlist.addSong(new Song("Second", "Singer", 0));
+
+        assertEquals(1, songs.size(), "Expected a snapshot not to see songs added after it was taken");
+    }
+}
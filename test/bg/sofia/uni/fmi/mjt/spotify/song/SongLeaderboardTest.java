@@ -0,0 +1,99 @@
+package bg.sofia.uni.fmi.mjt.spotify.song;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertIterableEquals;
+
+public class SongLeaderboardTest {
+    @Test
+    void testTopAfterPlays() {
+        Song first = new Song("First", "Singer", 10);
+        Song second = new Song("Second", "Singer", 9);
+        Song third = new Song("Third", "Singer", 1);
+        SongLeaderboard leaderboard = new SongLeaderboard(List.of(third, first, second));
+
+        second.increasePlayingTimes();
+        leaderboard.update(second);
+        second.increasePlayingTimes();
+        leaderboard.update(second);
+
+        List<Song> expected = List.of(second, first);
+        List<Song> result = leaderboard.top(2);
+        assertIterableEquals(expected, result, "Expected: " + expected + " but was: " + result);
+    }
+
+    @Test
+    void testTopMoreThanSongsCount() {
+        Song song = new Song("Song", "Singer", 3);
+        SongLeaderboard leaderboard = new SongLeaderboard(List.of(song));
+
+        assertIterableEquals(List.of(song), leaderboard.top(5), "Expected all songs when N exceeds their count");
+    }
+
+    @Test
+    void testTopDuringUpdatesSeesEverySongOnce() throws InterruptedException {
+        Song moving = new Song("Moving", "Singer", 0);
+        List<Song> songs = List.of(moving, new Song("First", "Singer", 1000), new Song("Second", "Singer", 500),
+            new Song("Third", "Singer", 250));
+        SongLeaderboard leaderboard = new SongLeaderboard(songs);
+        AtomicBoolean isPlaying = new AtomicBoolean(true);
+        Thread player = new Thread(() -> {
+            while (isPlaying.get()) {
+                moving.increasePlayingTimes();
+                leaderboard.update(moving);
+            }
+        });
+
+        player.start();
+        try {
+            for (int i = 0; i < 10_000; i++) {
+                List<Song> top = leaderboard.top(songs.size());
+                assertEquals(songs.size(), new HashSet<>(top).size(),
+                    "Expected every song exactly once while a song moves, but was " + top);
+            }
+        } finally {
+            isPlaying.set(false);
+            player.join();
+        }
+    }
+
+    @Test
+    void testUpdateDoesNotWaitForReads() throws InterruptedException {
+        Song first = new Song("First", "Singer", 2);
+        Song second = new Song("Second", "Singer", 1);
+        SongLeaderboard leaderboard = new SongLeaderboard(List.of(first, second));
+        Thread player = new Thread(() -> {
+            second.increasePlayingTimes();
+            second.increasePlayingTimes();
+            leaderboard.update(second);
+        });
+
+        synchronized (leaderboard) {
+            player.start();
+            player.join(5000);
+            assertFalse(player.isAlive(), "Expected a play not to wait while the leaderboard is being read");
+        }
+
+        assertIterableEquals(List.of(second, first), leaderboard.top(2),
+            "Expected the next read to rank the played song by its playing times");
+    }
+
+    @Test
+    void testRemovedSongIsNotRanked() {
+        Song first = new Song("First", "Singer", 2);
+        Song second = new Song("Second", "Singer", 1);
+        SongLeaderboard leaderboard = new SongLeaderboard(List.of(first, second));
+
+        second.increasePlayingTimes();
+        leaderboard.update(second);
+        leaderboard.remove(second);
+
+        assertIterableEquals(List.of(first), leaderboard.top(2), "Expected a removed song to be left out");
+    }
+}
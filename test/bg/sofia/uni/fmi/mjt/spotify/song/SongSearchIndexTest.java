@@ -0,0 +1,50 @@
+package bg.sofia.uni.fmi.mjt.spotify.song;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SongSearchIndexTest {
+    private static final Song HAPPY_SONG = new Song("Happy Song", "Singer Unknown", 0);
+    private static final Song HAPPY_DAY = new Song("Happy Day", "Other Singer", 0);
+    private static final Song RANDOM = new Song("Random", "Singer", 0);
+
+    private final SongSearchIndex searchIndex = new SongSearchIndex(List.of(HAPPY_SONG, HAPPY_DAY, RANDOM));
+
+    @Test
+    void testSearchAnyKeyword() {
+        Set<Song> result = searchIndex.search(Set.of("happy", "RANDOM"), SearchMode.ANY, Integer.MAX_VALUE);
+
+        assertEquals(Set.of(HAPPY_SONG, HAPPY_DAY, RANDOM), result, "Expected every song with any of the words");
+    }
+
+    @Test
+    void testSearchAllKeywords() {
+        Set<Song> result = searchIndex.search(Set.of("happy", "singer"), SearchMode.ALL, Integer.MAX_VALUE);
+
+        assertEquals(Set.of(HAPPY_SONG, HAPPY_DAY), result, "Expected only songs with all of the words");
+    }
+
+    @Test
+    void testSearchWithLimit() {
+        Set<Song> result = searchIndex.search(Set.of("singer"), SearchMode.ANY, 2);
+
+        assertEquals(2, result.size(), "Expected the result to be limited to 2 songs but was: " + result);
+    }
+
+    @Test
+    void testSearchAfterRemove() {
+        SongSearchIndex index = new SongSearchIndex(List.of(HAPPY_SONG, HAPPY_DAY));
+        index.remove(HAPPY_DAY);
+
+        Set<Song> result = index.search(Set.of("happy"), SearchMode.ANY, Integer.MAX_VALUE);
+
+        assertEquals(Set.of(HAPPY_SONG), result, "Removed song should not be found anymore");
+        assertTrue(index.search(Set.of("day"), SearchMode.ANY, Integer.MAX_VALUE).isEmpty(),
+            "Words only used by the removed song should not match anything");
+    }
+}
@@ -0,0 +1,59 @@
+package bg.sofia.uni.fmi.mjt.spotify.song;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class SongSnapshotTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void testReadReturnsWrittenSongs() throws IOException {
+        Path songsFile = directory.resolve("AllSongs.txt");
+        Files.writeString(songsFile, "First Singer 3" + System.lineSeparator() + "Second Singer 5");
+        Song first = new Song("First", "Singer", 3);
+        Song second = new Song("Second", "Singer", 5);
+
+        SongSnapshot.write(songsFile, Map.of(first, 3L, second, 5L));
+        Set<Song> songs = SongSnapshot.read(songsFile);
+
+        assertEquals(Set.of(first, second), songs);
+        for (Song song : songs) {
+            assertEquals(song.equals(first) ? 3 : 5, song.getPlayingTimes(), "Expected the playing times of " + song);
+        }
+    }
+
+    @Test
+    void testReadIgnoresSnapshotOfChangedSongsFile() throws IOException {
+        Path songsFile = directory.resolve("AllSongs.txt");
+        Files.writeString(songsFile, "First Singer 3");
+        SongSnapshot.write(songsFile, Map.of(new Song("First", "Singer", 3), 3L));
+
+        Files.writeString(songsFile, "First Singer 3" + System.lineSeparator() + "Second Singer 5");
+
+        assertNull(SongSnapshot.read(songsFile), "Expected a stale snapshot to be ignored");
+    }
+
+    @Test
+    void testReadIgnoresSnapshotOfSongsFileEditedWithoutChangingSizeOrTime() throws IOException {
+        Path songsFile = directory.resolve("AllSongs.txt");
+        Files.writeString(songsFile, "First Singer 3");
+        FileTime modifiedTime = Files.getLastModifiedTime(songsFile);
+        SongSnapshot.write(songsFile, Map.of(new Song("First", "Singer", 3), 3L));
+
+        Files.writeString(songsFile, "Other Singer 3");
+        Files.setLastModifiedTime(songsFile, modifiedTime);
+
+        assertNull(SongSnapshot.read(songsFile), "Expected the checksum of the songs file to reveal the edit");
+    }
+}
@@ -0,0 +1,23 @@
+package bg.sofia.uni.fmi.mjt.spotify.song;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class SongTest {
+    @Test
+    void testConcurrentPlaysAreNotLost() {
+        Song song = new Song("Song", "Singer", 5);
+        int plays = 10_000;
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(8)) {
+            IntStream.range(0, plays).forEach(i -> executor.submit(song::increasePlayingTimes));
+        }
+
+        assertEquals(plays + 5, song.getPlayingTimes(), "Expected every concurrent play to be counted");
+    }
+}
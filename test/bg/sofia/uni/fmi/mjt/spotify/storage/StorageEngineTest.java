@@ -0,0 +1,124 @@
+package bg.sofia.uni.fmi.mjt.spotify.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertIterableEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class StorageEngineTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void testRecoversWrittenRecords() {
+        Path file = directory.resolve("spotify.db");
+        try (StorageEngine storageEngine = new StorageEngine(file)) {
+            storageEngine.put("user/first", "password");
+            storageEngine.put("user/second", "password");
+            storageEngine.put("user/first", "changed");
+            storageEngine.delete("user/second");
+        }
+
+        try (StorageEngine storageEngine = new StorageEngine(file)) {
+            assertEquals("changed", storageEngine.get("user/first"), "Expected the last value of a key");
+            assertNull(storageEngine.get("user/second"), "Expected a deleted key to stay deleted");
+        }
+    }
+
+    @Test
+    void testScanReturnsKeysWithPrefixInOrder() {
+        try (StorageEngine storageEngine = new StorageEngine(directory.resolve("spotify.db"))) {
+            storageEngine.put("playlist/b", "");
+            storageEngine.put("playlist-song/a", "");
+            storageEngine.put("playlist/a", "");
+
+            assertIterableEquals(List.of("playlist/a", "playlist/b"), storageEngine.scan("playlist/").keySet());
+        }
+    }
+
+    @Test
+    void testRecoveryCutsOffTornRecord() throws IOException {
+        Path file = directory.resolve("spotify.db");
+        try (StorageEngine storageEngine = new StorageEngine(file)) {
+            storageEngine.put("user/first", "password");
+        }
+        long validSize = Files.size(file);
+        Files.write(file, new byte[] {0, 0, 0, 40, 1, 2}, StandardOpenOption.APPEND);
+
+        try (StorageEngine storageEngine = new StorageEngine(file)) {
+            assertEquals("password", storageEngine.get("user/first"));
+            assertEquals(validSize, Files.size(file), "Expected the torn record to be cut off");
+            storageEngine.put("user/second", "password");
+        }
+
+        try (StorageEngine storageEngine = new StorageEngine(file)) {
+            assertEquals("password", storageEngine.get("user/second"), "Expected writes after recovery to be kept");
+        }
+    }
+
+    @Test
+    void testCheckpointKeepsOnlyLiveRecords() {
+        Path file = directory.resolve("spotify.db");
+        try (StorageEngine storageEngine = new StorageEngine(file, 1024)) {
+            for (int i = 0; i < 200; i++) {
+                storageEngine.put("counter", String.valueOf(i));
+            }
+            assertTrue(storageEngine.getFileBytes() < 1024, "Expected overwritten records to be checkpointed away");
+        }
+
+        try (StorageEngine storageEngine = new StorageEngine(file)) {
+            assertEquals("199", storageEngine.get("counter"));
+            assertFalse(storageEngine.isEmpty());
+        }
+    }
+
+    @Test
+    void testFailedCheckpointDoesNotFailDurableWrites() throws IOException {
+        Path file = directory.resolve("spotify.db");
+        try (StorageEngine storageEngine = new StorageEngine(file, 1024)) {
+            Path blockedTempFile = Files.createDirectory(directory.resolve("spotify.db.tmp"));
+            Files.writeString(blockedTempFile.resolve("blocker"), "keeps the checkpoint from writing its file");
+            for (int i = 0; i < 200; i++) {
+                storageEngine.put("counter", String.valueOf(i));
+            }
+            assertEquals("199", storageEngine.get("counter"), "Expected the writes to succeed without checkpoints");
+            assertTrue(storageEngine.getFileBytes() >= 1024, "Expected the checkpoints to have failed");
+
+            Files.delete(blockedTempFile.resolve("blocker"));
+            Files.delete(blockedTempFile);
+            storageEngine.put("counter", "200");
+            assertTrue(storageEngine.getFileBytes() < 1024, "Expected a later write to retry the checkpoint");
+        }
+
+        try (StorageEngine storageEngine = new StorageEngine(file)) {
+            assertEquals("200", storageEngine.get("counter"));
+        }
+    }
+
+    @Test
+    void testValuesAreReadFromTheFileAfterACheckpoint() {
+        Path file = directory.resolve("spotify.db");
+        try (StorageEngine storageEngine = new StorageEngine(file, 1024)) {
+            storageEngine.put("user/first", "password");
+            for (int i = 0; i < 200; i++) {
+                storageEngine.put("counter", String.valueOf(i));
+            }
+            storageEngine.put("playlist/a", "value");
+
+            assertEquals("password", storageEngine.get("user/first"), "Expected the moved record to be read");
+            assertEquals("199", storageEngine.get("counter"));
+            assertIterableEquals(List.of("playlist/a"), storageEngine.keys("playlist/"));
+            assertEquals(3, storageEngine.getKeysCount());
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package bg.sofia.uni.fmi.mjt.spotify.streaming;
+
+import bg.sofia.uni.fmi.mjt.spotify.song.Song;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AudioCacheTest {
+    private static final AudioFormat FORMAT = new AudioFormat(22050, 16, 2, true, false);
+    private static final int SONG_DATA_SIZE = 4000;
+
+    @TempDir
+    Path tempDir;
+
+    private Song writeSong(String name, long playingTimes) throws IOException {
+        return writeSong(name, playingTimes, SONG_DATA_SIZE);
+    }
+
+    private Song writeSong(String name, long playingTimes, int dataSize) throws IOException {
+        byte[] samples = new byte[dataSize];
+        AudioInputStream audioInputStream = new AudioInputStream(new ByteArrayInputStream(samples), FORMAT,
+            samples.length / FORMAT.getFrameSize());
+        AudioSystem.write(audioInputStream, AudioFileFormat.Type.WAVE, tempDir.resolve(name + ".wav").toFile());
+        return new Song(name, "Singer", playingTimes);
+    }
+
+    private File songFile(Song song) {
+        return tempDir.resolve(song.getName() + ".wav").toFile();
+    }
+
+    private AudioCache cacheOfSongs(int songsCount) {
+        return new AudioCache(songsCount * (SONG_DATA_SIZE + 100L), this::songFile);
+    }
+
+    @Test
+    void testHitRatioAndResidentBytes() throws IOException, UnsupportedAudioFileException {
+        Song song = writeSong("first", 0);
+        AudioCache audioCache = cacheOfSongs(2);
+
+        audioCache.open(song).close();
+        audioCache.open(song).close();
+
+        assertEquals(0.5, audioCache.getHitRatio(), "Expected one miss followed by one hit");
+        assertEquals(1, audioCache.getHitsCount());
+        assertEquals(1, audioCache.getMissesCount());
+        assertEquals(SONG_DATA_SIZE, audioCache.getResidentBytes(), "Expected the audio data of the song");
+        assertEquals(1, audioCache.getCachedSongsCount(), "Expected the song to be cached once");
+    }
+
+    @Test
+    void testEvictsSongsWithFewestPlaysFirst() throws IOException, UnsupportedAudioFileException {
+        Song popular = writeSong("popular", 5);
+        Song unpopular = writeSong("unpopular", 1);
+        Song latest = writeSong("latest", 3);
+        AudioCache audioCache = cacheOfSongs(2);
+
+        audioCache.open(unpopular).close();
+        audioCache.open(popular).close();
+        audioCache.open(latest).close();
+
+        assertFalse(audioCache.isCached(unpopular), "Expected the song with the fewest plays to be evicted");
+        assertTrue(audioCache.isCached(popular), "Expected the song with the most plays to stay cached");
+        assertTrue(audioCache.isCached(latest), "Expected the just loaded song to stay cached");
+        assertEquals(2L * SONG_DATA_SIZE, audioCache.getResidentBytes(), "Expected the evicted song to be freed");
+    }
+
+    @Test
+    void testEvictsLeastRecentlyUsedAmongEqualPlays() throws IOException, UnsupportedAudioFileException {
+        Song first = writeSong("first", 2);
+        Song second = writeSong("second", 2);
+        Song third = writeSong("third", 2);
+        AudioCache audioCache = cacheOfSongs(2);
+
+        audioCache.open(first).close();
+        audioCache.open(second).close();
+        audioCache.open(first).close();
+        audioCache.open(third).close();
+
+        assertFalse(audioCache.isCached(second), "Expected the least recently used song to be evicted");
+        assertTrue(audioCache.isCached(first), "Expected the recently used song to stay cached");
+        assertEquals(2, audioCache.getCachedSongsCount(), "Expected the cache to stay within its byte budget");
+    }
+
+    @Test
+    void testSongLargerThanTheCacheIsNotCached() throws IOException, UnsupportedAudioFileException {
+        Song song = writeSong("long", 0, 4 * SONG_DATA_SIZE);
+        AudioCache audioCache = cacheOfSongs(1);
+
+        audioCache.open(song).close();
+
+        assertFalse(audioCache.isCached(song), "Expected a song larger than the cache to be read from its file");
+        assertEquals(0, audioCache.getResidentBytes(), "Expected no audio data in the cache");
+    }
+
+    @Test
+    void testConcurrentFirstPlaysLoadTheSongOnce() throws Exception {
+        Song song = writeSong("hit", 0);
+        AudioCache audioCache = cacheOfSongs(2);
+        int listenersCount = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(listenersCount);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> plays = new ArrayList<>();
+        try {
+            for (int i = 0; i < listenersCount; i++) {
+                plays.add(executor.submit(() -> {
+                    start.await();
+                    try (AudioSource audioSource = audioCache.open(song)) {
+                        assertEquals(SONG_DATA_SIZE, audioSource.read(2 * SONG_DATA_SIZE).remaining(),
+                            "Expected every listener to read the whole song");
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> play : plays) {
+                play.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals((double) (listenersCount - 1) / listenersCount, audioCache.getHitRatio(),
+            "Expected only one of the listeners to load the song");
+        assertEquals(SONG_DATA_SIZE, audioCache.getResidentBytes(), "Expected the song to be loaded once");
+    }
+}
@@ -0,0 +1,155 @@
+package bg.sofia.uni.fmi.mjt.spotify.streaming;
+
+import bg.sofia.uni.fmi.mjt.spotify.protocol.Frame;
+import bg.sofia.uni.fmi.mjt.spotify.protocol.FrameType;
+import bg.sofia.uni.fmi.mjt.spotify.song.Song;
+import org.junit.jupiter.api.Test;
+
+import javax.sound.sampled.AudioFormat;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AudioStreamTest {
+    private static final Song SONG = new Song("Song", "Singer", 0);
+    private static final long LEAD_MILLIS = 2000;
+    private static final int MAX_CHUNK_SIZE = 16 * 1024;
+    private static final long START_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final int BYTES_PER_SECOND = 22050 * 4;
+    private static final int LEAD_BYTES = 2 * BYTES_PER_SECOND;
+
+    @Test
+    void testSendsFormatFirst() throws IOException {
+        FakeFrameSink sink = new FakeFrameSink();
+
+        new AudioStream(sink, SONG, new FakeAudioSource(100), LEAD_MILLIS);
+
+        assertEquals(1, sink.getFrames(FrameType.AUDIO_FORMAT).size(), "Expected the format before any audio");
+    }
+
+    @Test
+    void testSplitsAudioIntoFrameAlignedChunks() throws IOException {
+        FakeFrameSink sink = new FakeFrameSink();
+        AudioStream audioStream = new AudioStream(sink, SONG, new FakeAudioSource(40_000), LEAD_MILLIS);
+
+        audioStream.tick();
+
+        List<Frame> chunks = sink.getFrames(FrameType.AUDIO_CHUNK);
+        assertEquals(3, chunks.size(), "Expected the song to be split into chunks of at most " + MAX_CHUNK_SIZE);
+        assertEquals(MAX_CHUNK_SIZE, chunks.get(0).payload().length);
+        assertEquals(MAX_CHUNK_SIZE, chunks.get(1).payload().length);
+        assertEquals(40_000 - 2 * MAX_CHUNK_SIZE, chunks.get(2).payload().length);
+        chunks.forEach(chunk -> assertEquals(0, chunk.payload().length % FakeAudioSource.FORMAT.getFrameSize(),
+            "Expected every chunk to hold whole frames"));
+    }
+
+    @Test
+    void testSendsAudioEndAtTheEndOfTheSong() throws IOException {
+        FakeFrameSink sink = new FakeFrameSink();
+        FakeAudioSource audioSource = new FakeAudioSource(1000);
+        AudioStream audioStream = new AudioStream(sink, SONG, audioSource, LEAD_MILLIS);
+
+        assertFalse(audioStream.tick(), "Expected the stream to be over once the song is sent");
+
+        assertEquals(1000, sink.getAudioBytes(), "Expected the whole song to be sent");
+        assertEquals(1, sink.getFrames(FrameType.AUDIO_END).size(), "Expected the end of the audio to be sent");
+        assertTrue(audioStream.isFinished());
+        assertTrue(audioSource.isClosed(), "Expected the audio source to be closed");
+        assertFalse(audioStream.tick(), "Expected a finished stream not to be ticked again");
+        assertEquals(1, sink.getFrames(FrameType.AUDIO_END).size(), "Expected the end to be sent once");
+    }
+
+    @Test
+    void testStoppedStreamEndsOnItsNextTick() throws IOException {
+        FakeFrameSink sink = new FakeFrameSink();
+        FakeAudioSource audioSource = new FakeAudioSource(1_000_000);
+        AudioStream audioStream = new AudioStream(sink, SONG, audioSource, LEAD_MILLIS);
+
+        audioStream.stop();
+
+        assertFalse(audioStream.tick(), "Expected a stopped stream to be over");
+        assertEquals(0, sink.getAudioBytes(), "Expected no audio after the stream was stopped");
+        assertEquals(1, sink.getFrames(FrameType.AUDIO_END).size(), "Expected the end of the audio to be sent");
+        assertTrue(audioSource.isClosed(), "Expected the audio source to be closed");
+    }
+
+    @Test
+    void testFirstTickSendsTheLeadBuffer() throws IOException {
+        FakeFrameSink sink = new FakeFrameSink();
+        AtomicLong clock = new AtomicLong(START_NANOS);
+        AudioStream audioStream = new AudioStream(sink, SONG, new FakeAudioSource(10_000_000), LEAD_MILLIS,
+            clock::get);
+
+        assertTrue(audioStream.tick());
+
+        assertEquals(LEAD_BYTES, sink.getAudioBytes(),
+            "Expected the lead buffer of frame rate times frame size times the lead time");
+    }
+
+    @Test
+    void testSendsAtThePlaybackRateAfterTheLeadBuffer() throws IOException {
+        FakeFrameSink sink = new FakeFrameSink();
+        AtomicLong clock = new AtomicLong(START_NANOS);
+        AudioStream audioStream = new AudioStream(sink, SONG, new FakeAudioSource(10_000_000), LEAD_MILLIS,
+            clock::get);
+        audioStream.tick();
+
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(500));
+        audioStream.tick();
+        assertEquals(LEAD_BYTES + BYTES_PER_SECOND / 2, sink.getAudioBytes(), "Expected half a second more audio");
+
+        audioStream.tick();
+        assertEquals(LEAD_BYTES + BYTES_PER_SECOND / 2, sink.getAudioBytes(),
+            "Expected nothing more to be sent before more time passes");
+
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(500));
+        audioStream.tick();
+        AudioStreamStats stats = audioStream.getStats();
+        assertEquals(BYTES_PER_SECOND, stats.targetBytesPerSecond(), 0.001, "Expected frame rate times frame size");
+        assertEquals(BYTES_PER_SECOND, stats.actualBytesPerSecond(), 0.001,
+            "Expected the stream to be sent exactly at its playback rate");
+        assertEquals(100, stats.getSendRatePercent());
+    }
+
+    @Test
+    void testSkipsTicksWhileTheClientIsCongested() throws IOException {
+        FakeFrameSink sink = new FakeFrameSink();
+        AtomicLong clock = new AtomicLong(START_NANOS);
+        AudioStream audioStream = new AudioStream(sink, SONG, new FakeAudioSource(10_000_000), LEAD_MILLIS,
+            clock::get);
+        sink.setCongested(true);
+
+        assertTrue(audioStream.tick(), "Expected a congested stream to keep going");
+        assertEquals(0, sink.getAudioBytes(), "Expected nothing to be sent to a congested client");
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        sink.setCongested(false);
+        audioStream.tick();
+        assertEquals(LEAD_BYTES + BYTES_PER_SECOND, sink.getAudioBytes(),
+            "Expected the stream to catch up once the client is no longer congested");
+    }
+
+    @Test
+    void testChunksHoldWholeFramesOfAnyFrameSize() throws IOException {
+        AudioFormat format = new AudioFormat(8000, 24, 2, true, false);
+        FakeFrameSink sink = new FakeFrameSink();
+        AtomicLong clock = new AtomicLong(START_NANOS);
+        AudioStream audioStream = new AudioStream(sink, SONG, new FakeAudioSource(format, 10_000_000), LEAD_MILLIS,
+            clock::get);
+
+        audioStream.tick();
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(333));
+        audioStream.tick();
+
+        List<Frame> chunks = sink.getFrames(FrameType.AUDIO_CHUNK);
+        chunks.forEach(chunk -> assertEquals(0, chunk.payload().length % format.getFrameSize(),
+            "Expected every chunk to hold whole frames of " + format.getFrameSize() + " bytes"));
+        assertEquals(MAX_CHUNK_SIZE - MAX_CHUNK_SIZE % format.getFrameSize(), chunks.get(0).payload().length,
+            "Expected the largest chunk to be cut down to whole frames");
+    }
+}
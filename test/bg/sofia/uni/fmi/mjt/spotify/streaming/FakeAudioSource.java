@@ -0,0 +1,46 @@
+package bg.sofia.uni.fmi.mjt.spotify.streaming;
+
+import javax.sound.sampled.AudioFormat;
+import java.nio.ByteBuffer;
+
+/**
+ * Audio of a given length in a given format, read from memory.
+ */
+class FakeAudioSource implements AudioSource {
+    static final AudioFormat FORMAT = new AudioFormat(22050, 16, 2, true, false);
+
+    private final AudioFormat format;
+    private final ByteBuffer data;
+    private volatile boolean isClosed;
+
+    FakeAudioSource(int size) {
+        this(FORMAT, size);
+    }
+
+    FakeAudioSource(AudioFormat format, int size) {
+        this.format = format;
+        this.data = ByteBuffer.allocate(size);
+    }
+
+    @Override
+    public AudioFormat getFormat() {
+        return format;
+    }
+
+    @Override
+    public ByteBuffer read(int maxBytes) {
+        int size = Math.min(maxBytes, data.remaining());
+        ByteBuffer chunk = data.slice(data.position(), size);
+        data.position(data.position() + size);
+        return chunk;
+    }
+
+    @Override
+    public void close() {
+        isClosed = true;
+    }
+
+    boolean isClosed() {
+        return isClosed;
+    }
+}
@@ -0,0 +1,46 @@
+package bg.sofia.uni.fmi.mjt.spotify.streaming;
+
+import bg.sofia.uni.fmi.mjt.spotify.protocol.Frame;
+import bg.sofia.uni.fmi.mjt.spotify.protocol.FrameSink;
+import bg.sofia.uni.fmi.mjt.spotify.protocol.FrameType;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Records the frames sent to a client.
+ */
+class FakeFrameSink implements FrameSink {
+    private final List<Frame> frames = new CopyOnWriteArrayList<>();
+    private volatile boolean isCongested;
+
+    @Override
+    public void send(Frame frame) {
+        frames.add(frame);
+    }
+
+    @Override
+    public void send(FrameType type, ByteBuffer payload) {
+        byte[] bytes = new byte[payload.remaining()];
+        payload.get(bytes);
+        send(new Frame(type, bytes));
+    }
+
+    @Override
+    public boolean isCongested() {
+        return isCongested;
+    }
+
+    void setCongested(boolean isCongested) {
+        this.isCongested = isCongested;
+    }
+
+    List<Frame> getFrames(FrameType type) {
+        return frames.stream().filter(frame -> frame.type() == type).toList();
+    }
+
+    long getAudioBytes() {
+        return getFrames(FrameType.AUDIO_CHUNK).stream().mapToLong(frame -> frame.payload().length).sum();
+    }
+}
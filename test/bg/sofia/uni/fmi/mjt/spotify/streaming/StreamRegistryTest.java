@@ -0,0 +1,119 @@
+package bg.sofia.uni.fmi.mjt.spotify.streaming;
+
+import bg.sofia.uni.fmi.mjt.spotify.exception.StreamLimitExceededException;
+import bg.sofia.uni.fmi.mjt.spotify.protocol.FrameSink;
+import bg.sofia.uni.fmi.mjt.spotify.song.Song;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class StreamRegistryTest {
+    private static final String USER = "user@mail.bg";
+
+    private final Song song = new Song("song", "singer", 0);
+    private final FrameSink firstConnection = mock(FrameSink.class);
+    private final FrameSink secondConnection = mock(FrameSink.class);
+    private final FrameSink thirdConnection = mock(FrameSink.class);
+    private final StreamingScheduler streamingSchedulerMock = mock(StreamingScheduler.class);
+    private StreamRegistry streams;
+
+    @BeforeEach
+    void setUp() throws IOException, UnsupportedAudioFileException {
+        when(streamingSchedulerMock.play(any(), any())).thenAnswer(invocation -> mock(AudioStream.class));
+        streams = new StreamRegistry(streamingSchedulerMock, 2);
+    }
+
+    @Test
+    void testStopStopsOnlyTheStreamOfTheConnection()
+        throws StreamLimitExceededException, IOException, UnsupportedAudioFileException {
+        AudioStream first = streams.play(firstConnection, USER, song);
+        AudioStream second = streams.play(secondConnection, "other@mail.bg", song);
+
+        streams.stop(firstConnection);
+
+        verify(first).stop();
+        verify(second, never()).stop();
+        assertEquals(0, streams.getActiveStreamsCount(USER));
+        assertEquals(1, streams.getActiveStreamsCount("other@mail.bg"));
+    }
+
+    @Test
+    void testPlayReplacesTheStreamOfTheConnection()
+        throws StreamLimitExceededException, IOException, UnsupportedAudioFileException {
+        AudioStream first = streams.play(firstConnection, USER, song);
+        streams.play(firstConnection, USER, song);
+
+        verify(first).stop();
+        assertEquals(1, streams.getActiveStreamsCount(USER),
+            "Expected a connection to play a single stream at a time");
+    }
+
+    @Test
+    void testPlayOverTheLimitOfTheUser() throws StreamLimitExceededException, IOException,
+        UnsupportedAudioFileException {
+        streams.play(firstConnection, USER, song);
+        streams.play(secondConnection, USER, song);
+
+        assertThrows(StreamLimitExceededException.class, () -> streams.play(thirdConnection, USER, song),
+            "Expected the streams of a user to be limited");
+        assertEquals(2, streams.getActiveStreamsCount(USER));
+    }
+
+    @Test
+    void testFinishedStreamsDoNotCountTowardsTheLimit()
+        throws StreamLimitExceededException, IOException, UnsupportedAudioFileException {
+        AudioStream first = streams.play(firstConnection, USER, song);
+        streams.play(secondConnection, USER, song);
+        when(first.isFinished()).thenReturn(true);
+
+        streams.play(thirdConnection, USER, song);
+
+        assertEquals(2, streams.getActiveStreamsCount(USER));
+    }
+
+    @Test
+    void testStoppedConnectionsAreForgotten()
+        throws StreamLimitExceededException, IOException, UnsupportedAudioFileException {
+        streams.play(firstConnection, USER, song);
+        streams.play(secondConnection, USER, song);
+        streams.play(thirdConnection, "other@mail.bg", song);
+
+        streams.stop(firstConnection);
+        assertEquals(2, streams.getUsersCount(), "The user still plays on another connection");
+
+        streams.stop(secondConnection);
+        streams.stop(thirdConnection);
+        assertEquals(0, streams.getUsersCount(), "Expected the users to be dropped once none of them plays");
+    }
+
+    @Test
+    void testConnectionOfAFinishedStreamIsForgottenWhenClosed()
+        throws StreamLimitExceededException, IOException, UnsupportedAudioFileException {
+        AudioStream first = streams.play(firstConnection, USER, song);
+        when(first.isFinished()).thenReturn(true);
+        assertEquals(0, streams.getActiveStreamsCount(USER));
+
+        streams.stop(firstConnection);
+
+        assertEquals(0, streams.getUsersCount(), "Expected the closed connection to be forgotten");
+    }
+
+    @Test
+    void testFailedPlayDoesNotKeepTheUser() throws IOException, UnsupportedAudioFileException {
+        when(streamingSchedulerMock.play(any(), any())).thenThrow(new IOException("missing file"));
+
+        assertThrows(IOException.class, () -> streams.play(firstConnection, USER, song));
+
+        assertEquals(0, streams.getUsersCount(), "Expected no user to be kept after a failed play");
+    }
+}
@@ -0,0 +1,93 @@
+package bg.sofia.uni.fmi.mjt.spotify.streaming;
+
+import bg.sofia.uni.fmi.mjt.spotify.metrics.MetricsRegistry;
+import bg.sofia.uni.fmi.mjt.spotify.protocol.FrameType;
+import bg.sofia.uni.fmi.mjt.spotify.song.Song;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class StreamingSchedulerTest {
+    private static final Song SONG = new Song("Song", "Singer", 0);
+    private static final long LEAD_MILLIS = 2000;
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    private StreamingScheduler scheduler;
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    void testStoppedStreamIsRemoved() throws IOException, InterruptedException {
+        scheduler = new StreamingScheduler(1, LEAD_MILLIS, new AudioCache());
+        FakeFrameSink sink = new FakeFrameSink();
+        FakeAudioSource audioSource = new FakeAudioSource(100_000_000);
+        AudioStream audioStream = scheduler.schedule(new AudioStream(sink, SONG, audioSource, LEAD_MILLIS));
+        assertEquals(1, scheduler.getActiveStreamsCount());
+
+        audioStream.stop();
+
+        awaitTrue(() -> scheduler.getActiveStreamsCount() == 0, "Expected the stopped stream to be removed");
+        assertEquals(1, sink.getFrames(FrameType.AUDIO_END).size(), "Expected the end of the audio to be sent");
+        assertTrue(audioSource.isClosed(), "Expected the audio source to be closed");
+    }
+
+    @Test
+    void testStreamsAreSpreadOverShardsAndAllTicked() throws IOException, InterruptedException {
+        int threadsCount = 2;
+        scheduler = new StreamingScheduler(threadsCount, LEAD_MILLIS, new AudioCache());
+        List<FakeFrameSink> sinks = new ArrayList<>();
+        List<AudioStream> audioStreams = new ArrayList<>();
+        for (int i = 0; i < 2 * threadsCount; i++) {
+            FakeFrameSink sink = new FakeFrameSink();
+            sink.setCongested(true);
+            sinks.add(sink);
+            audioStreams.add(scheduler.schedule(new AudioStream(sink, SONG, new FakeAudioSource(1000), LEAD_MILLIS)));
+        }
+        assertEquals(List.of(2, 2), scheduler.getShardSizes(), "Expected the streams to be spread evenly");
+
+        sinks.forEach(sink -> sink.setCongested(false));
+        awaitTrue(() -> scheduler.getActiveStreamsCount() == 0, "Expected every stream to be sent and removed");
+
+        for (int i = 0; i < sinks.size(); i++) {
+            assertTrue(audioStreams.get(i).isFinished());
+            assertEquals(1000, sinks.get(i).getAudioBytes(), "Expected every stream to be sent whole");
+            assertEquals(1, sinks.get(i).getFrames(FrameType.AUDIO_END).size(), "Expected every stream to be ended");
+        }
+    }
+
+    @Test
+    void testSendRatesAreReportedAsGauges() throws IOException {
+        scheduler = new StreamingScheduler(1, LEAD_MILLIS, new AudioCache());
+        MetricsRegistry metrics = new MetricsRegistry();
+        scheduler.registerGauges(metrics);
+        scheduler.schedule(new AudioStream(new FakeFrameSink(), SONG, new FakeAudioSource(100_000_000), LEAD_MILLIS));
+
+        String report = metrics.report();
+
+        assertTrue(report.contains("streaming.active-streams 1"), "Expected the active streams in " + report);
+        assertTrue(report.contains("streaming.send-rate.slowest-percent 100"),
+            "Expected a stream that was just started not to be measured yet in " + report);
+        assertTrue(report.contains("streaming.send-rate.lagging-streams 0"), "Expected no lagging streams");
+        assertTrue(report.contains("streaming.audio-cache.hit-ratio-percent 0"), "Expected the cache hit ratio");
+        assertTrue(report.contains("streaming.audio-cache.hits 0"), "Expected the cache hits");
+        assertTrue(report.contains("streaming.audio-cache.misses 0"), "Expected the cache misses");
+    }
+
+    private static void awaitTrue(BooleanSupplier condition, String message) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, message);
+            Thread.sleep(StreamingScheduler.TICK_MILLIS);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package bg.sofia.uni.fmi.mjt.spotify.streaming;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class WavFileTest {
+    private static final AudioFormat FORMAT = new AudioFormat(22050, 16, 2, true, false);
+
+    @TempDir
+    Path tempDir;
+
+    private Path writeWav(byte[] samples) throws IOException {
+        Path wav = tempDir.resolve("song.wav");
+        AudioInputStream audioInputStream = new AudioInputStream(new ByteArrayInputStream(samples), FORMAT,
+            samples.length / FORMAT.getFrameSize());
+        AudioSystem.write(audioInputStream, AudioFileFormat.Type.WAVE, wav.toFile());
+        return wav;
+    }
+
+    @Test
+    void testOpenParsesFormatAndData() throws IOException, UnsupportedAudioFileException {
+        byte[] samples = new byte[4000];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = (byte) i;
+        }
+        WavFile wavFile = WavFile.open(writeWav(samples));
+
+        assertEquals(FORMAT.getFrameRate(), wavFile.getFormat().getFrameRate(), "Unexpected frame rate");
+        assertEquals(FORMAT.getFrameSize(), wavFile.getFormat().getFrameSize(), "Unexpected frame size");
+        assertEquals(FORMAT.getChannels(), wavFile.getFormat().getChannels(), "Unexpected channels count");
+        assertEquals(AudioFormat.Encoding.PCM_SIGNED, wavFile.getFormat().getEncoding(), "Unexpected encoding");
+
+        byte[] data = new byte[wavFile.getSize()];
+        wavFile.getData().get(data);
+        assertArrayEquals(samples, data, "The mapped data should be exactly the samples of the file");
+    }
+
+    @Test
+    void testSourceReadsSlicesUntilTheEnd() throws IOException, UnsupportedAudioFileException {
+        WavAudioSource source = new WavAudioSource(WavFile.open(writeWav(new byte[1000])));
+
+        ByteBuffer first = source.read(600);
+        ByteBuffer second = source.read(600);
+        ByteBuffer third = source.read(600);
+
+        assertEquals(600, first.remaining(), "First read should be full");
+        assertEquals(400, second.remaining(), "Second read should return the rest of the data");
+        assertEquals(0, third.remaining(), "No data expected after the end of the song");
+    }
+
+    @Test
+    void testOpenNotWavFile() throws IOException {
+        Path notWav = tempDir.resolve("song.txt");
+        Files.writeString(notWav, "definitely not a wav file");
+
+        assertThrows(UnsupportedAudioFileException.class, () -> WavFile.open(notWav),
+            "UnsupportedAudioFileException expected for a file that is not WAV but nothing was thrown");
+    }
+}
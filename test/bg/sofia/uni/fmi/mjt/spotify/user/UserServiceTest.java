@@ -38,10 +38,23 @@ public class UserServiceTest {
 
         when(userRepositoryMock.exists(userEmail)).thenReturn(false);
         when(symmetricBlockCipherMock.encrypt(userPassword)).thenReturn(encryptedPassword);
+        when(userRepositoryMock.saveIfAbsent(userEmail, encryptedPassword)).thenReturn(true);
 
         userService.register(userEmail, userPassword);
 
-        verify(userRepositoryMock).save(userEmail, encryptedPassword);
+        verify(userRepositoryMock).saveIfAbsent(userEmail, encryptedPassword);
+    }
+
+    @Test
+    void testRegisterWhenUserIsSavedConcurrently() throws CipherException {
+        String encryptedPassword = "encrypt";
+
+        when(userRepositoryMock.exists(userEmail)).thenReturn(false);
+        when(symmetricBlockCipherMock.encrypt(userPassword)).thenReturn(encryptedPassword);
+        when(userRepositoryMock.saveIfAbsent(userEmail, encryptedPassword)).thenReturn(false);
+
+        assertThrows(UserAlreadyExistsException.class, () -> userService.register(userEmail, userPassword),
+            "UserAlreadyExistsException expected when another registration saved the email first");
     }
 
     @Test
@@ -52,7 +65,7 @@ public class UserServiceTest {
             "UserAlreadyExistsException expected to be thrown when user with email = " + userEmail +
                 " already exists");
 
-        verify(userRepositoryMock, never()).save(userEmail, userPassword);
+        verify(userRepositoryMock, never()).saveIfAbsent(userEmail, userPassword);
     }
 
     @Test
@@ -62,7 +75,7 @@ public class UserServiceTest {
         assertThrows(WeakPasswordException.class, () -> userService.register(userEmail,  userWeakPassword),
             "WeakPasswordException expected to be thrown when password is weak");
 
-        verify(userRepositoryMock, never()).save(userEmail, null);
+        verify(userRepositoryMock, never()).saveIfAbsent(userEmail, null);
     }
 
     @Test
@@ -72,7 +85,7 @@ public class UserServiceTest {
         assertThrows(WeakPasswordException.class, () -> userService.register(userEmail,  userWeakPassword),
             "WeakPasswordException expected to be thrown when password is with length < 8");
 
-        verify(userRepositoryMock, never()).save(userEmail, null);
+        verify(userRepositoryMock, never()).saveIfAbsent(userEmail, null);
     }
 
 